@@ -0,0 +1,102 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.PageStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Corpus synthétique hébreu/français pour les benchmarks.
+ * Tailles calées sur une page de livre scannée (~1800 caractères HE, ~2500 FR).
+ * Graine fixe: les résultats restent comparables d'un run à l'autre.
+ */
+final class BenchCorpus {
+
+    static final int HE_CHARS_PER_PAGE = 1800;
+    static final int FR_CHARS_PER_PAGE = 2500;
+
+    private static final String[] HE_WORDS = {
+            "בְּרֵאשִׁית", "בָּרָא", "אֱלֹהִים", "אֵת", "הַשָּׁמַיִם", "וְאֵת", "הָאָרֶץ",
+            "וְהָאָרֶץ", "הָיְתָה", "תֹהוּ", "וָבֹהוּ", "וְחֹשֶׁךְ", "עַל־פְּנֵי", "תְהוֹם",
+            "וְרוּחַ", "מְרַחֶפֶת", "הַמָּיִם", "וַיֹּאמֶר", "יְהִי", "אוֹר", "רַשִׁ\"י", "<מ\"ש>"
+    };
+
+    private static final String[] FR_WORDS = {
+            "Au", "commencement,", "Dieu", "créa", "le", "ciel", "et", "la", "terre.",
+            "Or", "était", "informe", "vide;", "ténèbres", "couvraient", "l'abîme",
+            "souffle", "planait", "sur", "eaux.", "\"Que", "lumière", "soit\"", "&", "<note>"
+    };
+
+    private BenchCorpus() {}
+
+    static String hebrew(Random rnd, int chars) {
+        return words(rnd, HE_WORDS, chars);
+    }
+
+    static String french(Random rnd, int chars) {
+        return words(rnd, FR_WORDS, chars);
+    }
+
+    static Document document(String title) {
+        Document d = new Document();
+        d.setId(1L);
+        d.setTitle(title);
+        return d;
+    }
+
+    static List<Page> pages(int count) {
+        Random rnd = new Random(42);
+        List<Page> pages = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Page p = new Page();
+            p.setId((long) i);
+            p.setPageNumber(i);
+            p.setStatus(PageStatus.DONE);
+            String he = hebrew(rnd, HE_CHARS_PER_PAGE);
+            p.setHebrewPlain(he);
+            p.setHebrewNikud(he);
+            p.setFrText(french(rnd, FR_CHARS_PER_PAGE));
+            pages.add(p);
+        }
+        return pages;
+    }
+
+    /** Octets pseudo-aléatoires (incompressibles, comme un JPEG). */
+    static byte[] scan(int bytes) {
+        byte[] b = new byte[bytes];
+        new Random(7).nextBytes(b);
+        return b;
+    }
+
+    /** Réponse modèle typique: JSON entouré d'un bloc ```json. */
+    static String modelOutput(Random rnd) {
+        String he = jsonString(hebrew(rnd, HE_CHARS_PER_PAGE));
+        String fr = jsonString(french(rnd, FR_CHARS_PER_PAGE));
+        return "```json\n{\"hebrew_plain\":\"" + he + "\",\"hebrew_niqqud\":\"" + he
+                + "\",\"french\":\"" + fr + "\"}\n```";
+    }
+
+    private static String jsonString(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String words(Random rnd, String[] dict, int chars) {
+        StringBuilder sb = new StringBuilder(chars + 32);
+        int line = 0;
+        while (sb.length() < chars) {
+            String w = dict[rnd.nextInt(dict.length)];
+            sb.append(w);
+            line += w.length();
+            if (line > 60) {
+                sb.append('\n');
+                line = 0;
+            } else {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+}
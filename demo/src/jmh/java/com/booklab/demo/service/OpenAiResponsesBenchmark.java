@@ -0,0 +1,57 @@
+package com.booklab.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OpenAiResponsesBenchmark {
+
+    OpenAiResponsesService service;
+    String modelOutput;
+
+    @Setup
+    public void setup() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ModelRouter router = new ModelRouter("bench-model", "bench-model", 500, 5000,
+                "", "", 120, 4000, 3_000_000, 6000);
+        service = new OpenAiResponsesService("http://localhost/v1/responses", "bench-key", router,
+                new HedgingPolicy(false, 0.95, 0.1, 20, 5000),
+                new OpenAiCircuitBreaker(5, 60, 900, registry),
+                new PipelineMetrics(registry));
+        modelOutput = BenchCorpus.modelOutput(new Random(3));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Scan {
+        // scans typiques: téléphone compressé, scanner 300dpi, photo pleine résolution
+        @Param({"300000", "1500000", "4000000"})
+        public int bytes;
+
+        byte[] data;
+
+        @Setup
+        public void setup() {
+            data = BenchCorpus.scan(bytes);
+        }
+    }
+
+    @Benchmark
+    public JsonNode parseJsonObject() throws Exception {
+        return service.parseJsonObject(modelOutput);
+    }
+
+    @Benchmark
+    public String toDataUrl(Scan s) {
+        return OpenAiResponsesService.toDataUrl(ByteBuffer.wrap(s.data), "image/jpeg");
+    }
+}
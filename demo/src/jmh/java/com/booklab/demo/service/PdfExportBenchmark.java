@@ -0,0 +1,76 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.Page;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PdfExportBenchmark {
+
+    String pageText;
+
+    @Setup
+    public void setup() {
+        pageText = BenchCorpus.french(new Random(1), BenchCorpus.FR_CHARS_PER_PAGE);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Xhtml {
+        @Param({"10", "100", "1000"})
+        public int pages;
+
+        Document doc;
+        List<Page> pageList;
+
+        @Setup
+        public void setup() {
+            doc = BenchCorpus.document("בראשית - chapitre 1 & \"notes\"");
+            pageList = BenchCorpus.pages(pages);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Render {
+        @Param({"10", "100", "1000"})
+        public int pages;
+
+        String xhtml;
+        byte[] font;
+
+        @Setup
+        public void setup() {
+            xhtml = PdfExportService.buildXhtml(BenchCorpus.document("Bench"), BenchCorpus.pages(pages));
+            font = PdfExportService.loadFontBytes("fonts/NotoSansHebrew-Regular.ttf");
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String escapeXml() {
+        return PdfExportService.escapeXml(pageText);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String buildXhtml(Xhtml s) {
+        return PdfExportService.buildXhtml(s.doc, s.pageList);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 3)
+    public byte[] renderPdf(Render s) throws Exception {
+        return PdfExportService.renderPdf(s.xhtml, s.font);
+    }
+}
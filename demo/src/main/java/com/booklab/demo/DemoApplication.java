@@ -2,12 +2,18 @@ package com.booklab.demo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class DemoApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(DemoApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(DemoApplication.class, args);
+		// ingestion en masse (cf. BulkIngestRunner): les runners ont fini, on ferme le contexte et on sort
+		// avec le code du bilan (les workers ne sont pas des threads démons)
+		if (context.getEnvironment().matchesProfiles("ingest")) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
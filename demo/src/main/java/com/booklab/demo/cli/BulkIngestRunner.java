@@ -0,0 +1,284 @@
+package com.booklab.demo.cli;
+
+import com.booklab.demo.domain.*;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import com.booklab.demo.service.BlobStore;
+import com.booklab.demo.service.PdfExportService;
+import com.booklab.demo.service.ProcessingService;
+import com.booklab.demo.service.SpreadSplitter;
+import com.booklab.demo.service.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Ingestion en masse sans serveur web (profil "ingest", cf. application-ingest.yml):
+ * chaque dossier de l'arborescence d'entrée qui contient des images devient un document
+ * (pages dans l'ordre des noms de fichiers, une double page en donnant deux), traité puis exporté en PDF.
+ *
+ * Reprise: un document est retrouvé par son dossier source et une image par son nom de fichier
+ * (Page.sourceName); les images déjà importées ne sont pas recopiées et les nouvelles pages sont numérotées
+ * à la suite. Seules les pages non DONE sont retraitées, un document terminé avec son PDF est sauté.
+ * Le code de sortie (ExitCodeGenerator) est appliqué par DemoApplication.main une fois le runner terminé.
+ *
+ *   java -jar demo.jar --spring.profiles.active=ingest --app.ingest.input=/chemin/scans
+ */
+@Component
+@Profile("ingest")
+public class BulkIngestRunner implements CommandLineRunner, ExitCodeGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIngestRunner.class);
+
+    private final DocumentRepository documentRepo;
+    private final PageRepository pageRepo;
+    private final StorageService storage;
+    private final ProcessingService processing;
+    private final PdfExportService pdfExport;
+    private final SpreadSplitter spreads;
+    private final String input;
+    private final int scanThreads;
+    private final int concurrentDocuments;
+
+    private final Summary summary = new Summary();
+
+    public BulkIngestRunner(DocumentRepository documentRepo,
+                            PageRepository pageRepo,
+                            StorageService storage,
+                            ProcessingService processing,
+                            @Lazy PdfExportService pdfExport,
+                            SpreadSplitter spreads,
+                            @Value("${app.ingest.input:}") String input,
+                            @Value("${app.ingest.scan-threads:0}") int scanThreads,
+                            @Value("${app.ingest.concurrent-documents:4}") int concurrentDocuments) {
+        this.documentRepo = documentRepo;
+        this.pageRepo = pageRepo;
+        this.storage = storage;
+        this.processing = processing;
+        this.pdfExport = pdfExport;
+        this.spreads = spreads;
+        this.input = input;
+        this.scanThreads = scanThreads > 0 ? scanThreads : Runtime.getRuntime().availableProcessors();
+        this.concurrentDocuments = Math.max(1, concurrentDocuments);
+    }
+
+    /** Un dossier source et ses images, triées par nom. */
+    record SourceDir(Path dir, String relative, List<Path> images) {}
+
+    @Override
+    public void run(String... args) {
+        long started = System.nanoTime();
+        try {
+            if (input == null || input.isBlank()) throw new IllegalArgumentException("app.ingest.input requis");
+            Path root = Paths.get(input).toAbsolutePath().normalize();
+            if (!Files.isDirectory(root)) throw new IllegalArgumentException("Dossier introuvable: " + root);
+
+            List<SourceDir> sources = scan(root);
+            log.info("Ingestion: {} dossiers avec images sous {}", sources.size(), root);
+            ingestAll(sources);
+        } catch (Exception e) {
+            log.error("Ingestion interrompue: {}", e.getMessage(), e);
+            summary.fatal = true;
+        }
+        summary.elapsed = Duration.ofNanos(System.nanoTime() - started);
+        log.info("{}", summary.report());
+    }
+
+    @Override
+    public int getExitCode() {
+        if (summary.fatal) return 2;
+        return summary.documentsWithErrors.get() > 0 ? 1 : 0;
+    }
+
+    /** Parcours parallèle de l'arborescence: un sous-dossier = une tâche fork/join. */
+    List<SourceDir> scan(Path root) {
+        ForkJoinPool pool = new ForkJoinPool(scanThreads);
+        try {
+            List<SourceDir> found = pool.invoke(new DirScan(root, root));
+            return found.stream().sorted(Comparator.comparing(SourceDir::relative)).toList();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void ingestAll(List<SourceDir> sources) throws InterruptedException {
+        // fenêtre de documents en cours: l'ordonnanceur répartit les workers entre eux
+        Semaphore window = new Semaphore(concurrentDocuments);
+        List<CompletableFuture<Void>> inflight = new ArrayList<>();
+
+        for (SourceDir src : sources) {
+            Long docId;
+            try {
+                docId = importDocument(src);
+            } catch (Exception e) {
+                log.warn("Ingestion: {} non importé: {}", src.relative(), e.getMessage());
+                summary.documentsWithErrors.incrementAndGet();
+                continue;
+            }
+            if (docId == null) continue;
+
+            window.acquire();
+            if (!processing.processDocument(docId)) {
+                window.release();
+                continue;
+            }
+            inflight.add(processing.completion(docId).whenComplete((v, ex) -> {
+                window.release();
+                collect(docId);
+            }));
+        }
+        CompletableFuture.allOf(inflight.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Crée (ou complète) le document d'un dossier source.
+     * Retourne l'id du document à traiter, ou null s'il est déjà terminé.
+     */
+    Long importDocument(SourceDir src) throws Exception {
+        Document doc = documentRepo.findBySourcePath(src.relative()).orElse(null);
+        if (doc == null) {
+            doc = new Document();
+            doc.setTitle(src.relative());
+            doc.setSourcePath(src.relative());
+            doc.setStatus(DocumentStatus.UPLOADED);
+            doc = documentRepo.save(doc);
+            summary.created.incrementAndGet();
+        } else {
+            summary.resumed.incrementAndGet();
+        }
+
+        List<Page> existing = pageRepo.findByDocumentIdOrderByPageNumberAsc(doc.getId());
+        Set<String> imported = new HashSet<>();
+        for (Page p : existing) imported.add(p.getSourceName());
+        int total = existing.size();
+
+        // les images sont importées dans l'ordre des noms: après une interruption il manque une fin de liste,
+        // numérotée à la suite (une image ajoutée après coup au dossier va aussi en fin de document)
+        int pageNumber = pageRepo.maxPageNumber(doc.getId()) + 1;
+        for (Path img : src.images()) {
+            String name = img.getFileName().toString();
+            if (imported.contains(name)) continue;
+
+            BlobStore.BlobRef blob = storage.savePageImage(img);
+            List<BlobStore.BlobRef> parts = spreads.split(blob);
+            List<Page> pages = new ArrayList<>(2);
+            for (BlobStore.BlobRef part : parts) {
+                Page p = new Page();
+                p.setDocument(doc);
+                p.setPageNumber(pageNumber);
+                p.setInputType(PageInputType.IMAGE);
+                p.setStatus(PageStatus.PENDING);
+                p.setImagePath(part.path());
+                p.setImageHash(part.hash());
+                p.setSourceName(name);
+                if (parts.size() > 1) p.setSourceHash(blob.hash());
+                pages.add(p);
+                pageNumber++;
+            }
+            // les deux moitiés d'une double page ensemble (saveAll est transactionnel)
+            pageRepo.saveAll(pages);
+            total += pages.size();
+            summary.pagesImported.incrementAndGet();
+            if (pages.size() > 1) summary.spreadsSplit.incrementAndGet();
+        }
+
+        boolean allDone = pageRepo.countByDocumentIdAndStatus(doc.getId(), PageStatus.DONE) == total;
+        if (allDone && doc.getStatus() != DocumentStatus.PROCESSING) {
+            if (doc.getPdfPath() == null) pdfExport.generatePdfForDocument(doc.getId());
+            summary.skipped.incrementAndGet();
+            summary.pagesDone.addAndGet(total);
+            return null;
+        }
+        return doc.getId();
+    }
+
+    private void collect(Long docId) {
+        Document doc = documentRepo.findById(docId).orElse(null);
+        if (doc == null) return;
+        summary.pagesDone.addAndGet(pageRepo.countByDocumentIdAndStatus(docId, PageStatus.DONE));
+        summary.pagesFailed.addAndGet(pageRepo.countByDocumentIdAndStatus(docId, PageStatus.FAILED));
+        if (doc.getStatus() != DocumentStatus.DONE) summary.documentsWithErrors.incrementAndGet();
+        log.info("Ingestion: document {} ({}) -> {}", docId, doc.getSourcePath(), doc.getStatus());
+    }
+
+    private static boolean isImage(Path p) {
+        String n = p.getFileName().toString().toLowerCase();
+        return n.endsWith(".jpg") || n.endsWith(".jpeg") || n.endsWith(".png");
+    }
+
+    private static final class DirScan extends RecursiveTask<List<SourceDir>> {
+        private final Path root;
+        private final Path dir;
+
+        DirScan(Path root, Path dir) {
+            this.root = root;
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<SourceDir> compute() {
+            List<Path> images = new ArrayList<>();
+            List<DirScan> children = new ArrayList<>();
+            try (Stream<Path> entries = Files.list(dir)) {
+                entries.forEach(p -> {
+                    if (Files.isDirectory(p)) children.add(new DirScan(root, p));
+                    else if (isImage(p)) images.add(p);
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(children);
+
+            List<SourceDir> found = new ArrayList<>();
+            if (!images.isEmpty()) {
+                images.sort(Comparator.comparing(p -> p.getFileName().toString()));
+                String rel = root.equals(dir) ? dir.getFileName().toString() : root.relativize(dir).toString();
+                found.add(new SourceDir(dir, rel.replace('\\', '/'), images));
+            }
+            for (DirScan c : children) found.addAll(c.join());
+            return found;
+        }
+    }
+
+    private static final class Summary {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger resumed = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger documentsWithErrors = new AtomicInteger();
+        final AtomicInteger pagesImported = new AtomicInteger();
+        final AtomicInteger spreadsSplit = new AtomicInteger();
+        final AtomicLong pagesDone = new AtomicLong();
+        final AtomicLong pagesFailed = new AtomicLong();
+        volatile boolean fatal;
+        volatile Duration elapsed = Duration.ZERO;
+
+        String report() {
+            return String.format("""
+                    Bilan ingestion (%ds):
+                      documents créés:         %d
+                      documents repris:        %d (dont %d déjà terminés)
+                      documents avec erreurs:  %d
+                      images importées:        %d (dont %d doubles pages)
+                      pages DONE / FAILED:     %d / %d""",
+                    elapsed.toSeconds(), created.get(), resumed.get(), skipped.get(),
+                    documentsWithErrors.get(), pagesImported.get(), spreadsSplit.get(), pagesDone.get(), pagesFailed.get());
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.booklab.demo.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
@@ -11,13 +14,21 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 public class AsyncConfig {
 
   @Bean
-  public TaskExecutor taskExecutor() {
+  public TaskExecutor taskExecutor(@Value("${app.processing.workers:2}") int workers, MeterRegistry registry) {
     ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
-    ex.setCorePoolSize(2);
-    ex.setMaxPoolSize(2);
+    ex.setCorePoolSize(workers);
+    ex.setMaxPoolSize(workers);
     ex.setQueueCapacity(100);
     ex.setThreadNamePrefix("booklab-");
     ex.initialize();
+
+    // jauges pour dimensionner la concurrence
+    Gauge.builder("booklab.executor.active", ex, ThreadPoolTaskExecutor::getActiveCount)
+        .description("Workers booklab- occupés")
+        .register(registry);
+    Gauge.builder("booklab.executor.queued", ex, e -> e.getThreadPoolExecutor().getQueue().size())
+        .description("Tâches en attente dans la file")
+        .register(registry);
     return ex;
   }
 }
@@ -1,26 +1,69 @@
 package com.booklab.demo.config;
 
+import com.booklab.demo.service.PackStore;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 @Configuration
+@ConditionalOnWebApplication
 public class WebConfig implements WebMvcConfigurer {
 
   private final String storageRoot;
+  private final PackStore packs;
 
-  public WebConfig(@Value("${app.storage.root}") String storageRoot) {
+  public WebConfig(@Value("${app.storage.root}") String storageRoot, PackStore packs) {
     this.storageRoot = storageRoot;
+    this.packs = packs;
   }
 
   @Override
   public void addResourceHandlers(ResourceHandlerRegistry registry) {
     Path rootPath = Paths.get(storageRoot).toAbsolutePath().normalize();
     registry.addResourceHandler("/storage/**")
-        .addResourceLocations(rootPath.toUri().toString());
+        .addResourceLocations(rootPath.toUri().toString())
+        .resourceChain(false)
+        .addResolver(new PackResourceResolver(packs));
+  }
+
+  /**
+   * Fichier libre d'abord (résolveur standard), sinon entrée de l'archive doc-N/pages.pack,
+   * envoyée directement depuis le mapping mémoire.
+   */
+  static class PackResourceResolver implements ResourceResolver {
+
+    private final PackStore packs;
+
+    PackResourceResolver(PackStore packs) {
+      this.packs = packs;
+    }
+
+    @Override
+    public Resource resolveResource(HttpServletRequest request, String requestPath,
+                                    List<? extends Resource> locations, ResourceResolverChain chain) {
+      Resource loose = chain.resolveResource(request, requestPath, locations);
+      if (loose != null) return loose;
+      try {
+        return packs.resource(requestPath);
+      } catch (IOException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public String resolveUrlPath(String resourcePath, List<? extends Resource> locations, ResourceResolverChain chain) {
+      return chain.resolveUrlPath(resourcePath, locations);
+    }
   }
 }
@@ -0,0 +1,27 @@
+package com.booklab.demo.domain;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Listener JPA (Document, Page): publie ContentChanged à chaque écriture, pour les caches qui en dépendent
+ * (ex: liste des documents). Instancié par Spring via le bean container Hibernate; le domaine ne connaît
+ * pas ses abonnés.
+ */
+public class ContentChangeListener {
+
+    private final ApplicationEventPublisher events;
+
+    public ContentChangeListener(ApplicationEventPublisher events) {
+        this.events = events;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void changed(Object entity) {
+        events.publishEvent(new ContentChanged(entity.getClass()));
+    }
+}
@@ -0,0 +1,4 @@
+package com.booklab.demo.domain;
+
+/** Événement Spring: un document ou une page a été créé, modifié ou supprimé (cf. ContentChangeListener). */
+public record ContentChanged(Class<?> entityType) {}
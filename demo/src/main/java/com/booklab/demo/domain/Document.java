@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
+@EntityListeners(ContentChangeListener.class)
 @Table(name = "documents")
 public class Document {
 
@@ -27,6 +28,10 @@ public class Document {
     // chemin relatif du PDF (ex: doc-3/export.pdf)
     private String pdfPath;
 
+    // ingestion en masse: dossier source (relatif à la racine d'entrée), null pour un upload web
+    @Column(length = 1024)
+    private String sourcePath;
+
     @PrePersist
     void prePersist() {
         Instant now = Instant.now();
@@ -57,4 +62,7 @@ public class Document {
 
     public String getPdfPath() { return pdfPath; }
     public void setPdfPath(String pdfPath) { this.pdfPath = pdfPath; }
+
+    public String getSourcePath() { return sourcePath; }
+    public void setSourcePath(String sourcePath) { this.sourcePath = sourcePath; }
 }
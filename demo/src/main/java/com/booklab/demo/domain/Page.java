@@ -3,7 +3,8 @@ package com.booklab.demo.domain;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "pages")
+@EntityListeners(ContentChangeListener.class)
+@Table(name = "pages", indexes = @Index(name = "idx_pages_image_hash", columnList = "imageHash"))
 public class Page {
 
     @Id
@@ -24,9 +25,20 @@ public class Page {
     @Column(nullable = false)
     private PageStatus status = PageStatus.PENDING;
 
-    // IMAGE: chemin relatif (ex: doc-3/page-1.jpg)
+    // IMAGE: chemin relatif (ex: blobs/3f/a2/3fa2...c1.jpg, ou doc-3/page-1.jpg pour les anciens documents)
     private String imagePath;
 
+    // IMAGE: SHA-256 du contenu (cf. BlobStore); deux pages de même hash sont la même image
+    @Column(length = 64)
+    private String imageHash;
+
+    // ingestion en masse: nom du fichier image source (les deux moitiés d'une double page le partagent)
+    private String sourceName;
+
+    // IMAGE: SHA-256 de la double page d'origine dont cette page est une moitié (référence BlobStore), sinon null
+    @Column(length = 64)
+    private String sourceHash;
+
     // TEXT: texte hebreu fourni
     @Lob
     private String hebrewInputText;
@@ -63,6 +75,15 @@ public class Page {
     public String getImagePath() { return imagePath; }
     public void setImagePath(String imagePath) { this.imagePath = imagePath; }
 
+    public String getImageHash() { return imageHash; }
+    public void setImageHash(String imageHash) { this.imageHash = imageHash; }
+
+    public String getSourceName() { return sourceName; }
+    public void setSourceName(String sourceName) { this.sourceName = sourceName; }
+
+    public String getSourceHash() { return sourceHash; }
+    public void setSourceHash(String sourceHash) { this.sourceHash = sourceHash; }
+
     public String getHebrewInputText() { return hebrewInputText; }
     public void setHebrewInputText(String hebrewInputText) { this.hebrewInputText = hebrewInputText; }
 
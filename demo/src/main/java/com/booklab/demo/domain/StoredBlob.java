@@ -0,0 +1,52 @@
+package com.booklab.demo.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Contenu binaire (image de page) stocké une seule fois, identifié par son SHA-256.
+ * refCount = nombre de pages qui y font référence; à 0 le fichier est supprimé par le GC.
+ */
+@Entity
+@Table(name = "blobs")
+public class StoredBlob {
+
+    // SHA-256 hexadécimal
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    // chemin relatif (ex: blobs/3f/a2/3fa2...c1.jpg)
+    @Column(nullable = false)
+    private String path;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private int refCount;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    void prePersist() {
+        this.createdAt = Instant.now();
+    }
+
+    // getters/setters
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public int getRefCount() { return refCount; }
+    public void setRefCount(int refCount) { this.refCount = refCount; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,11 @@
+package com.booklab.demo.repo;
+
+import com.booklab.demo.domain.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface BlobRepository extends JpaRepository<StoredBlob, String> {
+
+    List<StoredBlob> findByRefCountLessThanEqual(int refCount);
+}
@@ -1,10 +1,25 @@
 package com.booklab.demo.repo;
 
 import com.booklab.demo.domain.Document;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 public interface DocumentRepository extends JpaRepository<Document, Long> {
-    List<Document> findAllByOrderByCreatedAtDesc();
+
+    Optional<Document> findBySourcePath(String sourcePath);
+
+    // pagination par clé (created_at, id): coût constant quelle que soit la page (index idx_documents_created_at)
+    List<Document> findAllByOrderByCreatedAtDescIdDesc(Limit limit);
+
+    @Query("""
+            select d from Document d
+            where d.createdAt < :createdAt or (d.createdAt = :createdAt and d.id < :id)
+            order by d.createdAt desc, d.id desc""")
+    List<Document> findPageBefore(@Param("createdAt") Instant createdAt, @Param("id") Long id, Limit limit);
 }
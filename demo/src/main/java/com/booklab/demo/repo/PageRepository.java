@@ -1,10 +1,14 @@
 package com.booklab.demo.repo;
 
 import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.PageStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,9 +16,48 @@ public interface PageRepository extends JpaRepository<Page, Long> {
 
     List<Page> findByDocumentIdOrderByPageNumberAsc(Long documentId);
 
+    long countByDocumentIdAndStatus(Long documentId, PageStatus status);
+
+    Optional<Page> findFirstByImageHashAndStatusAndIdNot(String imageHash, PageStatus status, Long id);
+
+    @Query("""
+            select new com.booklab.demo.repo.PageStats(p.document.id, count(p),
+                sum(case when p.status = com.booklab.demo.domain.PageStatus.DONE then 1 else 0 end),
+                sum(case when p.status = com.booklab.demo.domain.PageStatus.FAILED then 1 else 0 end))
+            from Page p where p.document.id in :docIds group by p.document.id""")
+    List<PageStats> statsByDocumentIds(@Param("docIds") Collection<Long> docIds);
+
     @Query("select p from Page p join fetch p.document d where p.id = :id")
     Optional<Page> findWithDocumentById(@Param("id") Long id);
 
     @Query("select coalesce(max(p.pageNumber), 0) from Page p where p.document.id = :docId")
     int maxPageNumber(@Param("docId") Long docId);
+
+    // documents dont des images ne sont pas encore dans l'archive: blob libre propre au document, ou ancien fichier
+    // sans hash (un blob partagé avec un autre document reste dans le BlobStore)
+    @Query("""
+            select distinct p.document.id from Page p
+            where p.inputType = com.booklab.demo.domain.PageInputType.IMAGE and p.imagePath is not null
+              and (p.imageHash is null or (p.imagePath like 'blobs/%' and not exists (
+                  select o.id from Page o where o.imageHash = p.imageHash and o.document.id <> p.document.id)))""")
+    List<Long> findDocumentIdsWithLoosePages();
+
+    // images du document utilisées aussi par un autre document
+    @Query("""
+            select distinct p.imageHash from Page p
+            where p.document.id = :docId and p.imageHash is not null and exists (
+                select o.id from Page o where o.imageHash = p.imageHash and o.document.id <> :docId)""")
+    List<String> findImageHashesSharedWithOtherDocuments(@Param("docId") Long docId);
+
+    /**
+     * Bascule l'image d'une page (empaquetage) sans réécrire le reste de la ligne: texte et statut écrits
+     * entre-temps par le traitement sont conservés. Sans effet (0) si le chemin a changé depuis la lecture.
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update Page p set p.imagePath = :newPath, p.imageHash = coalesce(p.imageHash, :hash)
+            where p.id = :id and p.imagePath = :oldPath""")
+    int moveImage(@Param("id") Long id, @Param("oldPath") String oldPath,
+                  @Param("newPath") String newPath, @Param("hash") String hash);
 }
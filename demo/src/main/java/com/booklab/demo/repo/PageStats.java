@@ -0,0 +1,9 @@
+package com.booklab.demo.repo;
+
+/** Agrégats de pages d'un document, calculés en SQL (index pages(document_id, status)). */
+public record PageStats(Long documentId, long total, long done, long failed) {
+
+    public static PageStats empty(Long documentId) {
+        return new PageStats(documentId, 0, 0, 0);
+    }
+}
@@ -0,0 +1,191 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.StoredBlob;
+import com.booklab.demo.repo.BlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Stockage adressé par contenu: chaque fichier est rangé sous son SHA-256
+ * (blobs/ab/cd/abcd....ext, deux niveaux de répertoires pour éviter les dossiers géants).
+ * Une image envoyée plusieurs fois n'est écrite qu'une fois; les pages comptent leurs références
+ * et le GC supprime les blobs qui ne sont plus référencés.
+ */
+@Service
+public class BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+
+    static final String BLOB_DIR = "blobs";
+
+    /** Résultat d'un dépôt: hash, chemin relatif, et si le contenu existait déjà. */
+    public record BlobRef(String hash, String path, long size, boolean duplicate) {}
+
+    private final Path root;
+    private final Path tmp;
+    private final BlobRepository blobRepo;
+    private final PipelineMetrics metrics;
+
+    public BlobStore(@Value("${app.storage.root:data}") String rootDir,
+                     BlobRepository blobRepo,
+                     PipelineMetrics metrics) {
+        this.root = Paths.get(rootDir).toAbsolutePath().normalize();
+        this.tmp = root.resolve(BLOB_DIR).resolve("tmp");
+        this.blobRepo = blobRepo;
+        this.metrics = metrics;
+        try {
+            Files.createDirectories(tmp);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot create blob store: " + tmp, e);
+        }
+    }
+
+    /**
+     * Dépose un contenu et prend une référence dessus.
+     * Le flux est haché pendant la copie vers un fichier temporaire, puis déplacé à sa place
+     * (ou jeté si le blob existe déjà).
+     */
+    public BlobRef put(InputStream in, String ext) throws IOException {
+        Path staging = tmp.resolve(UUID.randomUUID() + ".part");
+        MessageDigest sha = sha256();
+        long size;
+        try (DigestInputStream din = new DigestInputStream(in, sha);
+             OutputStream out = Files.newOutputStream(staging)) {
+            size = din.transferTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(staging);
+            throw e;
+        }
+        String hash = HexFormat.of().formatHex(sha.digest());
+
+        try {
+            return addRef(hash, ext, size, staging);
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    public BlobRef put(byte[] bytes, String ext) throws IOException {
+        return put(new ByteArrayInputStream(bytes), ext);
+    }
+
+    /** Chemin absolu du blob, ou null s'il est inconnu. */
+    public Path resolve(String hash) {
+        return blobRepo.findById(hash).map(b -> root.resolve(b.getPath())).orElse(null);
+    }
+
+    /** Ajoute une référence à un blob déjà stocké (une page de plus pointe dessus). */
+    public synchronized void retain(String hash) {
+        if (hash == null) return;
+        blobRepo.findById(hash).ifPresent(b -> {
+            b.setRefCount(b.getRefCount() + 1);
+            blobRepo.save(b);
+        });
+    }
+
+    /** Rend une référence (page supprimée). Le fichier disparaît au prochain GC si plus personne ne l'utilise. */
+    public synchronized void release(String hash) {
+        if (hash == null) return;
+        blobRepo.findById(hash).ifPresent(b -> {
+            b.setRefCount(Math.max(0, b.getRefCount() - 1));
+            blobRepo.save(b);
+        });
+    }
+
+    /** Supprime les blobs sans référence et les fichiers temporaires orphelins. Retourne le nombre de blobs supprimés. */
+    public synchronized int collectGarbage() {
+        List<StoredBlob> dead = blobRepo.findByRefCountLessThanEqual(0);
+        for (StoredBlob b : dead) {
+            try {
+                Files.deleteIfExists(root.resolve(b.getPath()));
+            } catch (IOException e) {
+                log.warn("GC blob {}: suppression impossible ({})", b.getHash(), e.getMessage());
+                continue;
+            }
+            blobRepo.delete(b);
+        }
+        // dépôts interrompus (crash pendant un upload): sous verrou, aucun put() n'est en phase de déplacement
+        try (Stream<Path> parts = Files.list(tmp)) {
+            parts.filter(p -> p.getFileName().toString().endsWith(".part"))
+                    .filter(BlobStore::olderThanAnHour)
+                    .forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            log.warn("GC blob: nettoyage de {} impossible ({})", tmp, e.getMessage());
+        }
+        if (!dead.isEmpty()) log.info("GC blob: {} blobs supprimés", dead.size());
+        return dead.size();
+    }
+
+    private synchronized BlobRef addRef(String hash, String ext, long size, Path staging) throws IOException {
+        StoredBlob existing = blobRepo.findById(hash).orElse(null);
+        if (existing != null && Files.exists(root.resolve(existing.getPath()))) {
+            existing.setRefCount(existing.getRefCount() + 1);
+            blobRepo.save(existing);
+            metrics.cache("blob", true);
+            return new BlobRef(hash, existing.getPath(), existing.getSize(), true);
+        }
+
+        String rel = shardedPath(hash, ext);
+        Path dest = root.resolve(rel);
+        Files.createDirectories(dest.getParent());
+        Files.move(staging, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        StoredBlob b = existing != null ? existing : new StoredBlob();
+        b.setHash(hash);
+        b.setPath(rel);
+        b.setSize(size);
+        b.setRefCount((existing != null ? existing.getRefCount() : 0) + 1);
+        blobRepo.save(b);
+        metrics.cache("blob", false);
+        return new BlobRef(hash, rel, size, false);
+    }
+
+    /** Chemin relatif d'un blob (une page qui pointe dessus détient une référence). */
+    public static boolean isBlobPath(String relativePath) {
+        return relativePath != null && relativePath.startsWith(BLOB_DIR + "/");
+    }
+
+    /** SHA-256 hexadécimal d'un fichier (même identité que put()). */
+    static String sha256(Path file) throws IOException {
+        MessageDigest sha = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), sha)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    static String shardedPath(String hash, String ext) {
+        return BLOB_DIR + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ext;
+    }
+
+    private static boolean olderThanAnHour(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis() < System.currentTimeMillis() - 3_600_000L;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
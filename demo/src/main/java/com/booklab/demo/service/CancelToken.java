@@ -0,0 +1,64 @@
+package com.booklab.demo.service;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * Annulation coopérative d'une page en cours: les appels HTTP en vol s'enregistrent ici
+ * et sont annulés (requête interrompue) dès que la page est annulée ou expire.
+ * On n'interrompt pas le thread: une interruption pendant une écriture H2 fermerait le fichier.
+ */
+public final class CancelToken {
+
+    public static final CancelToken NONE = new CancelToken();
+
+    private final Set<Future<?>> inflight = ConcurrentHashMap.newKeySet();
+    private volatile String reason;
+    private volatile boolean expired;
+
+    /** Annulation: la page retourne en PENDING. */
+    public void cancel(String reason) {
+        stop(reason, false);
+    }
+
+    /** Délai dépassé: la page passe en FAILED. */
+    public void expire(String reason) {
+        stop(reason, true);
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    public boolean isExpired() {
+        return expired;
+    }
+
+    public String reason() {
+        return reason;
+    }
+
+    public void throwIfCancelled() {
+        if (reason != null) throw new CancellationException(reason);
+    }
+
+    public <F extends Future<?>> F register(F future) {
+        if (this == NONE) return future;
+        inflight.add(future);
+        if (reason != null) future.cancel(true);
+        return future;
+    }
+
+    public void unregister(Future<?> future) {
+        inflight.remove(future);
+    }
+
+    private synchronized void stop(String why, boolean expire) {
+        if (this == NONE || reason != null) return;
+        this.expired = expire;
+        this.reason = why;
+        for (Future<?> f : inflight) f.cancel(true);
+    }
+}
@@ -0,0 +1,143 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.ContentChanged;
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import com.booklab.demo.repo.PageStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Liste paginée des documents pour la page d'accueil: pagination par clé (created_at, id),
+ * compteurs de pages calculés en SQL pour la seule page affichée, et petit cache à durée courte.
+ * Le cache est borné (LRU, les curseurs viennent du client) et vidé à toute écriture sur un document
+ * ou une page (événement ContentChanged).
+ */
+@Service
+public class DocumentListing {
+
+    public static final int PAGE_SIZE = 50;
+
+    /** Position dans la liste: le dernier document affiché (null = début). */
+    public record Cursor(Instant createdAt, Long id) {}
+
+    public record ListingPage(List<Document> documents, Map<Long, PageStats> stats, Cursor next) {
+
+        public PageStats statsFor(Long documentId) {
+            return stats.getOrDefault(documentId, PageStats.empty(documentId));
+        }
+    }
+
+    private record Cached(ListingPage page, long expiresAt) {}
+
+    private final DocumentRepository documentRepo;
+    private final PageRepository pageRepo;
+    private final PipelineMetrics metrics;
+    private final long ttlNanos;
+
+    // ordre d'accès: le curseur le moins récemment lu part en premier; accès sous verrou (this.cache)
+    private final Map<Cursor, Cached> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public DocumentListing(DocumentRepository documentRepo,
+                           PageRepository pageRepo,
+                           PipelineMetrics metrics,
+                           @Value("${app.listing.cache-seconds:5}") long cacheSeconds,
+                           @Value("${app.listing.cache-entries:64}") int cacheEntries) {
+        this.documentRepo = documentRepo;
+        this.pageRepo = pageRepo;
+        this.metrics = metrics;
+        this.ttlNanos = Duration.ofSeconds(cacheSeconds).toNanos();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Cursor, Cached> eldest) {
+                return size() > cacheEntries;
+            }
+        };
+    }
+
+    /** Page de documents après le curseur (null = les plus récents). */
+    public ListingPage page(Cursor after) {
+        Cursor key = after == null ? new Cursor(null, null) : after;
+        long now = System.nanoTime();
+        synchronized (cache) {
+            Cached c = cache.get(key);
+            if (c != null && now - c.expiresAt() < 0) {
+                metrics.cache("document_listing", true);
+                return c.page();
+            }
+            // entrée expirée: retirée à la lecture
+            if (c != null) cache.remove(key);
+        }
+        metrics.cache("document_listing", false);
+
+        // une invalidation pendant la requête rend le résultat non cachable
+        long gen = generation.get();
+        ListingPage page = load(after);
+        if (ttlNanos > 0) {
+            synchronized (cache) {
+                if (generation.get() == gen) cache.put(key, new Cached(page, now + ttlNanos));
+            }
+        }
+        return page;
+    }
+
+    /** Entrées en cache (au plus app.listing.cache-entries). */
+    public int cachedPages() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /** Compteurs d'un seul document (vue détail). */
+    public PageStats stats(Long documentId) {
+        List<PageStats> s = pageRepo.statsByDocumentIds(List.of(documentId));
+        return s.isEmpty() ? PageStats.empty(documentId) : s.get(0);
+    }
+
+    public void invalidate() {
+        synchronized (cache) {
+            generation.incrementAndGet();
+            cache.clear();
+        }
+    }
+
+    @EventListener(ContentChanged.class)
+    void onContentChanged() {
+        invalidate();
+    }
+
+    private ListingPage load(Cursor after) {
+        // un document de plus pour savoir s'il existe une page suivante
+        Limit limit = Limit.of(PAGE_SIZE + 1);
+        List<Document> docs = after == null
+                ? documentRepo.findAllByOrderByCreatedAtDescIdDesc(limit)
+                : documentRepo.findPageBefore(after.createdAt(), after.id(), limit);
+
+        Cursor next = null;
+        if (docs.size() > PAGE_SIZE) {
+            docs = docs.subList(0, PAGE_SIZE);
+            Document last = docs.get(PAGE_SIZE - 1);
+            next = new Cursor(last.getCreatedAt(), last.getId());
+        }
+
+        Map<Long, PageStats> stats = new HashMap<>();
+        if (!docs.isEmpty()) {
+            for (PageStats s : pageRepo.statsByDocumentIds(docs.stream().map(Document::getId).toList())) {
+                stats.put(s.documentId(), s);
+            }
+        }
+        return new ListingPage(List.copyOf(docs), stats, next);
+    }
+}
@@ -0,0 +1,187 @@
+package com.booklab.demo.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Archive d'un document: un seul fichier (doc-N/pages.pack) au lieu de centaines de petits fichiers.
+ *
+ * Format (big-endian):
+ * <pre>
+ *   en-tête (32 octets): magic "BKPACK01" | version (int) | nb entrées (int) | offset index (long) | taille index (long)
+ *   données:             contenus des entrées, bout à bout
+ *   index:               par entrée: longueur nom (short) | nom UTF-8 | offset (long) | taille (long)
+ * </pre>
+ * Une archive n'est jamais modifiée sur place: on en réécrit une nouvelle puis on la met en place
+ * par renommage atomique. La lecture passe par un mapping mémoire du fichier.
+ */
+public final class DocumentPack implements Closeable {
+
+    static final byte[] MAGIC = "BKPACK01".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    /** Entrée à écrire: une région d'un fichier existant (fichier libre ou autre archive). */
+    public record Source(Path file, long offset, long length) {
+        public static Source of(Path file) throws IOException {
+            return new Source(file, 0, Files.size(file));
+        }
+    }
+
+    private record Slot(long offset, long length) {}
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer whole;
+    private final Map<String, Slot> index;
+
+    private DocumentPack(Path file, FileChannel channel, MappedByteBuffer whole, Map<String, Slot> index) {
+        this.file = file;
+        this.channel = channel;
+        this.whole = whole;
+        this.index = index;
+    }
+
+    /** Ouvre une archive existante (en-tête et index lus via le mapping). */
+    public static DocumentPack open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            if (size < HEADER_SIZE) throw new IOException("Archive tronquée: " + file);
+
+            // au-delà de 2 Go on mappe entrée par entrée
+            MappedByteBuffer whole = size <= Integer.MAX_VALUE ? ch.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+            ByteBuffer header = whole != null ? whole.slice(0, HEADER_SIZE) : ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Archive invalide: " + file);
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("Version d'archive non supportée (" + version + "): " + file);
+            int count = header.getInt();
+            long indexOffset = header.getLong();
+            long indexLength = header.getLong();
+            if (indexOffset + indexLength > size) throw new IOException("Index hors du fichier: " + file);
+
+            ByteBuffer idx = ch.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexLength);
+            Map<String, Slot> index = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[Short.toUnsignedInt(idx.getShort())];
+                idx.get(name);
+                index.put(new String(name, StandardCharsets.UTF_8), new Slot(idx.getLong(), idx.getLong()));
+            }
+            return new DocumentPack(file, ch, whole, index);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Écrit une archive contenant les entrées données (copiées par transferTo, sans passer par le heap)
+     * dans un fichier temporaire, puis la met en place atomiquement.
+     */
+    public static void write(Path dest, Map<String, Source> entries) throws IOException {
+        Path tmp = dest.resolveSibling(dest.getFileName() + ".tmp");
+        Map<String, Slot> slots = new LinkedHashMap<>();
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pos = HEADER_SIZE;
+            for (Map.Entry<String, Source> e : entries.entrySet()) {
+                Source src = e.getValue();
+                try (FileChannel in = FileChannel.open(src.file(), StandardOpenOption.READ)) {
+                    long done = 0;
+                    while (done < src.length()) {
+                        long n = in.transferTo(src.offset() + done, src.length() - done, out.position(pos + done));
+                        // 0 octet: la source est plus courte que prévu (fichier tronqué entre-temps)
+                        if (n <= 0) throw new IOException("Source tronquée: " + src.file() + " (" + done + "/" + src.length() + " octets)");
+                        done += n;
+                    }
+                }
+                slots.put(e.getKey(), new Slot(pos, src.length()));
+                pos += src.length();
+            }
+
+            ByteBuffer idx = ByteBuffer.allocate(indexSize(slots));
+            for (Map.Entry<String, Slot> e : slots.entrySet()) {
+                byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                idx.putShort((short) name.length).put(name)
+                        .putLong(e.getValue().offset()).putLong(e.getValue().length());
+            }
+            idx.flip();
+            long indexOffset = pos;
+            writeFully(out, idx, indexOffset);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .put(MAGIC).putInt(VERSION).putInt(slots.size()).putLong(indexOffset).putLong(idx.limit());
+            header.flip();
+            writeFully(out, header, 0);
+            out.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    public Set<String> names() {
+        return index.keySet();
+    }
+
+    /** Région de l'entrée dans le fichier (pour la recopier dans une nouvelle archive), ou null. */
+    public Source source(String name) {
+        Slot s = index.get(name);
+        return s == null ? null : new Source(file, s.offset(), s.length());
+    }
+
+    /** Contenu de l'entrée, vue en lecture seule sur le mapping (aucune copie), ou null. */
+    public ByteBuffer read(String name) throws IOException {
+        Slot s = index.get(name);
+        if (s == null) return null;
+        if (whole != null) return whole.slice((int) s.offset(), (int) s.length()).asReadOnlyBuffer();
+        return channel.map(FileChannel.MapMode.READ_ONLY, s.offset(), s.length());
+    }
+
+    @Override
+    public void close() throws IOException {
+        // le mapping reste valide après fermeture du canal; il est libéré par le GC
+        channel.close();
+    }
+
+    private static int indexSize(Map<String, Slot> slots) {
+        int n = 0;
+        for (String name : slots.keySet()) {
+            int len = name.getBytes(StandardCharsets.UTF_8).length;
+            if (len > 0xFFFF) throw new IllegalArgumentException("Nom d'entrée trop long: " + name);
+            n += 2 + len + 16;
+        }
+        return n;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += out.write(buf, position);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.booklab.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Politique de "hedging" des appels OpenAI: si un appel dépasse le percentile choisi
+ * des latences récentes (par modèle), on envoie un doublon et le premier résultat valide gagne.
+ * Le nombre de doublons est plafonné à une fraction du trafic total.
+ */
+@Component
+public class HedgingPolicy {
+
+    private static final int WINDOW = 256;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final double maxFraction;
+    private final int minSamples;
+    private final Duration minDelay;
+
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    public HedgingPolicy(@Value("${app.openai.hedging.enabled:false}") boolean enabled,
+                         @Value("${app.openai.hedging.percentile:0.95}") double percentile,
+                         @Value("${app.openai.hedging.max-fraction:0.1}") double maxFraction,
+                         @Value("${app.openai.hedging.min-samples:20}") int minSamples,
+                         @Value("${app.openai.hedging.min-delay-ms:5000}") long minDelayMs) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.maxFraction = maxFraction;
+        this.minSamples = minSamples;
+        this.minDelay = Duration.ofMillis(minDelayMs);
+    }
+
+    /** Délai avant doublon pour ce modèle, ou null si pas de hedging (désactivé / pas assez de mesures). */
+    public Duration hedgeDelay(String model) {
+        calls.incrementAndGet();
+        if (!enabled) return null;
+        LatencyWindow w = windows.get(model);
+        if (w == null) return null;
+        long p = w.percentileMillis(percentile, minSamples);
+        if (p < 0) return null;
+        Duration d = Duration.ofMillis(p);
+        return d.compareTo(minDelay) < 0 ? minDelay : d;
+    }
+
+    /** Réserve un doublon dans le budget (fraction max du trafic). */
+    public boolean tryAcquireHedge() {
+        while (true) {
+            long h = hedges.get();
+            if (h + 1 > maxFraction * calls.get()) return false;
+            if (hedges.compareAndSet(h, h + 1)) return true;
+        }
+    }
+
+    public void record(String model, Duration latency) {
+        windows.computeIfAbsent(model, k -> new LatencyWindow()).add(latency.toMillis());
+    }
+
+    /** Nombre de mesures dans la fenêtre du modèle (tests). */
+    int samples(String model) {
+        LatencyWindow w = windows.get(model);
+        return w == null ? 0 : w.size();
+    }
+
+    private static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW];
+        private int size;
+        private int next;
+
+        synchronized void add(long ms) {
+            samples[next] = ms;
+            next = (next + 1) % WINDOW;
+            if (size < WINDOW) size++;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long percentileMillis(double p, int minSamples) {
+            if (size < minSamples) return -1;
+            long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            int idx = (int) Math.ceil(p * size) - 1;
+            return copy[Math.max(0, Math.min(size - 1, idx))];
+        }
+    }
+}
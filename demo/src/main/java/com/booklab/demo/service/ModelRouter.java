@@ -0,0 +1,107 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.PageInputType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Choix du modèle par page: on tente d'abord le modèle rapide (fast-*),
+ * puis on escalade vers le modèle lourd (text-model / vision-model) si la sortie est
+ * vide, tronquée, non parsable ou jugée de mauvaise qualité.
+ * Les grosses pages partent directement sur le modèle lourd.
+ */
+@Component
+public class ModelRouter {
+
+    public record ModelTier(String name, String model, Duration timeout, int maxOutputTokens) {}
+
+    private final ModelTier fastText;
+    private final ModelTier fastVision;
+    private final ModelTier text;
+    private final ModelTier vision;
+    private final long largeImageBytes;
+    private final int largeTextChars;
+
+    public ModelRouter(@Value("${app.openai.text-model:gpt-5-mini}") String textModel,
+                       @Value("${app.openai.vision-model:gpt-5-mini}") String visionModel,
+                       @Value("${app.openai.timeout-seconds:500}") long timeoutSeconds,
+                       @Value("${app.openai.max-output-tokens:5000}") int maxOutputTokens,
+                       @Value("${app.openai.fast-text-model:}") String fastTextModel,
+                       @Value("${app.openai.fast-vision-model:}") String fastVisionModel,
+                       @Value("${app.openai.fast-timeout-seconds:120}") long fastTimeoutSeconds,
+                       @Value("${app.openai.fast-max-output-tokens:4000}") int fastMaxOutputTokens,
+                       @Value("${app.openai.routing.large-image-bytes:3000000}") long largeImageBytes,
+                       @Value("${app.openai.routing.large-text-chars:6000}") int largeTextChars) {
+        this.text = new ModelTier("heavy", textModel, Duration.ofSeconds(timeoutSeconds), maxOutputTokens);
+        this.vision = new ModelTier("heavy", visionModel, Duration.ofSeconds(timeoutSeconds), maxOutputTokens);
+        this.fastText = fastTier(fastTextModel, textModel, fastTimeoutSeconds, fastMaxOutputTokens);
+        this.fastVision = fastTier(fastVisionModel, visionModel, fastTimeoutSeconds, fastMaxOutputTokens);
+        this.largeImageBytes = largeImageBytes;
+        this.largeTextChars = largeTextChars;
+    }
+
+    /** Tiers à essayer dans l'ordre; size = octets (IMAGE) ou caractères (TEXT). */
+    public List<ModelTier> route(PageInputType type, long size) {
+        boolean image = type == PageInputType.IMAGE;
+        ModelTier fast = image ? fastVision : fastText;
+        ModelTier heavy = image ? vision : text;
+        boolean large = image ? size > largeImageBytes : size > largeTextChars;
+
+        if (fast == null || large) return List.of(heavy);
+        return List.of(fast, heavy);
+    }
+
+    /**
+     * Heuristique de qualité: null si le résultat est acceptable, sinon la raison de l'escalade.
+     * Une image peut ne porter aucun texte hébreu (page blanche, illustration, titre en caractères latins):
+     * champs hébreux vides, c'est une réponse correcte et le modèle lourd n'y changerait rien.
+     * Le niqqud n'est exigé que si de l'hébreu a été produit.
+     */
+    public String qualityProblem(PageInputType input, OpenAiResponsesService.ExtractTranslateResult r) {
+        String he = r.hebrewPlain();
+        String nikud = r.hebrewNikud();
+        String fr = r.frText();
+
+        if (countHebrewLetters(he) == 0) {
+            if (input == PageInputType.IMAGE && isBlank(he) && isBlank(nikud)) return null;
+            // texte fourni en hébreu, ou champ hébreu rempli d'autre chose: sortie à refaire
+            return isBlank(he) && isBlank(fr) ? "empty" : "no_hebrew";
+        }
+        if (isBlank(fr)) return "no_french";
+        if (isBlank(nikud) || !hasNiqqud(nikud)) return "no_niqqud";
+
+        // traduction anormalement courte par rapport au texte source: souvent une sortie tronquée
+        if (fr.strip().length() * 4 < he.strip().length()) return "short_french";
+        return null;
+    }
+
+    private static ModelTier fastTier(String fastModel, String heavyModel, long timeoutSeconds, int maxOutputTokens) {
+        if (isBlank(fastModel) || fastModel.equals(heavyModel)) return null;
+        return new ModelTier("fast", fastModel, Duration.ofSeconds(timeoutSeconds), maxOutputTokens);
+    }
+
+    private static int countHebrewLetters(String s) {
+        if (s == null) return 0;
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 'א' && c <= 'ת') n++;
+        }
+        return n;
+    }
+
+    private static boolean hasNiqqud(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 'ְ' && c <= 'ׇ') return true;
+        }
+        return false;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+}
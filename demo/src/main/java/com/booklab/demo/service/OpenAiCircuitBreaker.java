@@ -0,0 +1,156 @@
+package com.booklab.demo.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Disjoncteur autour de l'API OpenAI.
+ * Après N échecs "d'indisponibilité" consécutifs (réseau, timeout, 429, 5xx, clé refusée) il s'ouvre:
+ * plus aucun appel, l'ordonnanceur laisse les pages en PENDING. Une fois le délai écoulé,
+ * un seul appel de test (HALF_OPEN) est autorisé; s'il réussit on referme, sinon on rouvre
+ * avec un délai doublé (plafonné).
+ */
+@Component
+public class OpenAiCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiCircuitBreaker.class);
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    public record Status(State state, int consecutiveFailures, Instant retryAt, String lastError) {
+        public boolean isClosed() {
+            return state == State.CLOSED;
+        }
+    }
+
+    /** Appel refusé car le disjoncteur est ouvert. */
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Duration maxOpenDuration;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private Duration currentOpen;
+    private Instant openUntil;
+    private boolean probeInFlight;
+    private String lastError;
+
+    @Autowired
+    public OpenAiCircuitBreaker(@Value("${app.openai.circuit.failure-threshold:5}") int failureThreshold,
+                                @Value("${app.openai.circuit.open-seconds:60}") long openSeconds,
+                                @Value("${app.openai.circuit.max-open-seconds:900}") long maxOpenSeconds,
+                                MeterRegistry registry) {
+        this(failureThreshold, openSeconds, maxOpenSeconds, registry, Clock.systemUTC());
+    }
+
+    /** clock: horloge des délais d'ouverture (remplaçable dans les tests). */
+    OpenAiCircuitBreaker(int failureThreshold, long openSeconds, long maxOpenSeconds,
+                         MeterRegistry registry, Clock clock) {
+        this.clock = clock;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = Duration.ofSeconds(openSeconds);
+        this.maxOpenDuration = Duration.ofSeconds(Math.max(openSeconds, maxOpenSeconds));
+        this.currentOpen = openDuration;
+
+        Gauge.builder("booklab.openai.circuit.state", this, b -> b.status().state().ordinal())
+                .description("Disjoncteur OpenAI: 0=CLOSED, 1=HALF_OPEN, 2=OPEN")
+                .register(registry);
+    }
+
+    /** Réserve le droit d'appeler l'API, ou lève CircuitOpenException. */
+    public synchronized void acquire() {
+        switch (state) {
+            case CLOSED -> { }
+            case OPEN -> {
+                if (clock.instant().isBefore(openUntil)) throw rejected();
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                log.info("OpenAI circuit: HALF_OPEN, appel de test");
+            }
+            case HALF_OPEN -> {
+                if (probeInFlight) throw rejected();
+                probeInFlight = true;
+            }
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) log.info("OpenAI circuit: CLOSED (API de nouveau disponible)");
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        currentOpen = openDuration;
+        probeInFlight = false;
+        lastError = null;
+    }
+
+    public synchronized void onFailure(String error) {
+        consecutiveFailures++;
+        lastError = error;
+        if (state == State.HALF_OPEN) {
+            currentOpen = min(currentOpen.multipliedBy(2), maxOpenDuration);
+            open();
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /** Appel terminé sans verdict (annulé): libère l'appel de test éventuel. */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) probeInFlight = false;
+    }
+
+    /** Le disjoncteur laisse-t-il passer le trafic normal (hedging compris) ? */
+    public synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /** Un appel de test peut-il partir (maintenant ou à l'échéance du délai) ? */
+    public synchronized boolean canProbe() {
+        return state == State.OPEN || (state == State.HALF_OPEN && !probeInFlight);
+    }
+
+    /** Délai avant le prochain appel de test possible (zéro si un test peut partir maintenant). */
+    public synchronized Duration untilProbe() {
+        if (state == State.OPEN) {
+            Duration d = Duration.between(clock.instant(), openUntil);
+            return d.isNegative() ? Duration.ZERO : d;
+        }
+        return Duration.ZERO;
+    }
+
+    public synchronized Status status() {
+        return new Status(state, consecutiveFailures, state == State.OPEN ? openUntil : null, lastError);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        probeInFlight = false;
+        openUntil = clock.instant().plus(currentOpen);
+        log.warn("OpenAI circuit: OPEN pour {}s après {} échecs ({})",
+                currentOpen.toSeconds(), consecutiveFailures, lastError);
+    }
+
+    private CircuitOpenException rejected() {
+        return new CircuitOpenException("OpenAI indisponible (disjoncteur " + state + ")");
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
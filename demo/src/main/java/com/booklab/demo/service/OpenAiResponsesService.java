@@ -1,64 +1,95 @@
 package com.booklab.demo.service;
 
+import com.booklab.demo.domain.PageInputType;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.*;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Client de l'API Responses. Bean paresseux: ni lui ni son HttpClient ne sont créés au démarrage;
+ * une clé absente n'empêche plus l'application de démarrer, elle fait échouer le premier appel.
+ */
 @Service
+@Lazy
 public class OpenAiResponsesService {
 
     public record ExtractTranslateResult(String hebrewPlain, String hebrewNikud, String frText) {}
 
-    private final HttpClient http;
+    /** Sortie du modèle inexploitable (vide, tronquée): justifie une escalade vers le tier suivant. */
+    static class ModelOutputException extends RuntimeException {
+        ModelOutputException(String message) {
+            super(message);
+        }
+    }
+
+    /** API injoignable ou refusant le service (réseau, timeout, 401/403, 429, 5xx): compte pour le disjoncteur. */
+    public static class ApiUnavailableException extends RuntimeException {
+        public ApiUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiResponsesService.class);
+
+    private volatile HttpClient http;
     private final ObjectMapper om = new ObjectMapper();
     private final String apiKey;
-    private final String model;
+    private final URI endpoint;
+    private final ModelRouter router;
+    private final HedgingPolicy hedging;
+    private final OpenAiCircuitBreaker breaker;
+    private final PipelineMetrics metrics;
 
     public OpenAiResponsesService(
-            @Value("${app.openai.model:gpt-5-mini}") String model,
-            @Value("${app.openai.apiKey:}") String apiKeyProp
+            @Value("${app.openai.endpoint:https://api.openai.com/v1/responses}") String endpoint,
+            @Value("${app.openai.apiKey:}") String apiKeyProp,
+            ModelRouter router,
+            HedgingPolicy hedging,
+            OpenAiCircuitBreaker breaker,
+            PipelineMetrics metrics
     ) {
-        this.http = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(20))
-                .build();
-
         String env = System.getenv("OPENAI_API_KEY");
         this.apiKey = (apiKeyProp != null && !apiKeyProp.isBlank()) ? apiKeyProp : env;
 
         if (this.apiKey == null || this.apiKey.isBlank()) {
-            throw new IllegalStateException("OPENAI_API_KEY manquant (env) ou app.openai.apiKey (properties/yml).");
+            log.warn("OPENAI_API_KEY manquant (env) ou app.openai.apiKey: les appels OpenAI échoueront.");
         }
 
-        this.model = model;
+        this.endpoint = URI.create(endpoint);
+        this.router = router;
+        this.hedging = hedging;
+        this.breaker = breaker;
+        this.metrics = metrics;
     }
 
-    public ExtractTranslateResult extractTranslateFromImage(Path imagePath) throws Exception {
-        byte[] bytes = Files.readAllBytes(imagePath);
-        String base64 = Base64.getEncoder().encodeToString(bytes);
-
-        String mime = guessMime(imagePath);
-        String dataUrl = "data:" + mime + ";base64," + base64;
+    /** image: contenu de la page (vue mappée, lue une seule fois pour l'encodage base64); name sert au type MIME. */
+    public ExtractTranslateResult extractTranslateFromImage(ByteBuffer image, String name, CancelToken token) throws Exception {
+        long size = image.remaining();
+        String dataUrl = metrics.time(PipelineMetrics.IMAGE_READ, () -> toDataUrl(image, guessMime(name)));
 
         String instructions =
                 "Tu es un expert en hébreu (textes religieux) et en traduction française.\n" +
                 "Objectif: extraire le texte hébreu de l'image, produire une version avec niqqud, et traduire en français.\n" +
                 "Réponds STRICTEMENT en JSON valide, sans texte autour.\n" +
                 "Clés attendues: hebrew_plain, hebrew_niqqud, french.\n" +
+                "Si la page ne contient aucun texte hébreu (page blanche, illustration), hebrew_plain et hebrew_niqqud sont vides.\n" +
                 "Conserve la structure (retours à la ligne). Ne rajoute pas d'explications.";
 
-        Map<String, Object> payload = new LinkedHashMap<>();
-        payload.put("model", model);
-        payload.put("instructions", instructions);
-
         // input = [{role:user, content:[{input_text},{input_image}]}]
         List<Object> input = new ArrayList<>();
         Map<String, Object> msg = new LinkedHashMap<>();
@@ -70,19 +101,11 @@ public class OpenAiResponsesService {
         msg.put("content", content);
 
         input.add(msg);
-        payload.put("input", input);
 
-        String out = callResponses(payload);
-        JsonNode json = parseJsonObject(out);
-
-        return new ExtractTranslateResult(
-                safeText(json, "hebrew_plain"),
-                safeText(json, "hebrew_niqqud"),
-                safeText(json, "french")
-        );
+        return callWithEscalation(PageInputType.IMAGE, router.route(PageInputType.IMAGE, size), instructions, input, token);
     }
 
-    public ExtractTranslateResult nikudAndTranslateFromText(String hebrewText) throws Exception {
+    public ExtractTranslateResult nikudAndTranslateFromText(String hebrewText, CancelToken token) throws Exception {
         String instructions =
                 "Tu es un expert en hébreu (textes religieux) et en traduction française.\n" +
                 "Objectif: à partir d'un texte hébreu, produire une version avec niqqud, et traduire en français.\n" +
@@ -90,10 +113,6 @@ public class OpenAiResponsesService {
                 "Clés attendues: hebrew_plain, hebrew_niqqud, french.\n" +
                 "Conserve la structure (retours à la ligne). Ne rajoute pas d'explications.";
 
-        Map<String, Object> payload = new LinkedHashMap<>();
-        payload.put("model", model);
-        payload.put("instructions", instructions);
-
         List<Object> input = new ArrayList<>();
         Map<String, Object> msg = new LinkedHashMap<>();
         msg.put("role", "user");
@@ -102,35 +121,85 @@ public class OpenAiResponsesService {
                         "Texte hébreu:\n" + hebrewText + "\n\nRetourne le JSON demandé.")
         ));
         input.add(msg);
-        payload.put("input", input);
 
-        String out = callResponses(payload);
-        JsonNode json = parseJsonObject(out);
+        return callWithEscalation(PageInputType.TEXT, router.route(PageInputType.TEXT, hebrewText.length()),
+                instructions, input, token);
+    }
+
+    /**
+     * Essaie les tiers dans l'ordre (rapide puis lourd). On escalade sur sortie vide/tronquée,
+     * JSON invalide ou résultat jugé insuffisant; les erreurs HTTP remontent telles quelles.
+     * Le dernier tier renvoie son résultat même imparfait.
+     */
+    private ExtractTranslateResult callWithEscalation(PageInputType type,
+                                                      List<ModelRouter.ModelTier> tiers,
+                                                      String instructions,
+                                                      List<Object> input,
+                                                      CancelToken token) throws Exception {
+        for (int i = 0; ; i++) {
+            token.throwIfCancelled();
+            ModelRouter.ModelTier tier = tiers.get(i);
+            boolean last = i == tiers.size() - 1;
+
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("model", tier.model());
+            payload.put("instructions", instructions);
+            payload.put("input", input);
+            payload.put("max_output_tokens", tier.maxOutputTokens());
+
+            String reason;
+            try {
+                String out = callResponses(payload, tier, token);
+                JsonNode json = parseJsonObject(out);
+
+                ExtractTranslateResult res = new ExtractTranslateResult(
+                        safeText(json, "hebrew_plain"),
+                        safeText(json, "hebrew_niqqud"),
+                        safeText(json, "french")
+                );
+                reason = router.qualityProblem(type, res);
+                if (reason == null || last) return res;
+
+            } catch (ModelOutputException | JsonProcessingException e) {
+                if (last) throw e;
+                reason = e instanceof JsonProcessingException ? "parse_error" : "bad_output";
+            }
 
-        return new ExtractTranslateResult(
-                safeText(json, "hebrew_plain"),
-                safeText(json, "hebrew_niqqud"),
-                safeText(json, "french")
-        );
+            log.info("OpenAI: escalade {} -> {} ({})", tier.model(), tiers.get(i + 1).model(), reason);
+            metrics.retry("escalate_" + reason);
+        }
     }
 
-    private String callResponses(Map<String, Object> payload) throws Exception {
+    private String callResponses(Map<String, Object> payload, ModelRouter.ModelTier tier, CancelToken token) throws Exception {
+        if (apiKey == null || apiKey.isBlank()) {
+            throw new IllegalStateException("OPENAI_API_KEY manquant (env) ou app.openai.apiKey (properties/yml).");
+        }
         String body = om.writeValueAsString(payload);
 
         HttpRequest req = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.openai.com/v1/responses"))
-                .timeout(Duration.ofSeconds(120))
+                .uri(endpoint)
+                .timeout(tier.timeout())
                 .header("Authorization", "Bearer " + apiKey)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
                 .build();
 
-        HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        HttpResponse<String> resp = metrics.time(PipelineMetrics.MODEL_CALL, () -> sendGuarded(req, tier.model(), token));
+        if (isOutageStatus(resp.statusCode())) {
+            throw new ApiUnavailableException("OpenAI API error " + resp.statusCode() + ": " + resp.body(), null);
+        }
         if (resp.statusCode() >= 300) {
             throw new RuntimeException("OpenAI API error " + resp.statusCode() + ": " + resp.body());
         }
 
         JsonNode root = om.readTree(resp.body());
+        recordUsage(root, tier.model());
+
+        // max_output_tokens atteint: la sortie est tronquée, inutile de la parser
+        if ("incomplete".equals(root.path("status").asText())) {
+            throw new ModelOutputException("OpenAI: réponse incomplète ("
+                    + root.path("incomplete_details").path("reason").asText("?") + ")");
+        }
 
         // D'après la spec Responses, il peut y avoir "output_text"
         if (root.hasNonNull("output_text")) {
@@ -154,12 +223,157 @@ public class OpenAiResponsesService {
         }
         String s = sb.toString().trim();
         if (s.isBlank()) {
-            throw new RuntimeException("OpenAI: output_text vide (réponse inattendue). Body=" + resp.body());
+            throw new ModelOutputException("OpenAI: output_text vide (réponse inattendue). Body=" + resp.body());
         }
         return s;
     }
 
-    private JsonNode parseJsonObject(String s) throws Exception {
+    /** Envoi derrière le disjoncteur: refus immédiat s'il est ouvert, verdict enregistré sinon. */
+    private HttpResponse<String> sendGuarded(HttpRequest req, String model, CancelToken token) throws Exception {
+        breaker.acquire();
+        HttpResponse<String> resp;
+        try {
+            resp = send(req, model, token);
+        } catch (CancellationException e) {
+            breaker.onIgnored();
+            throw e;
+        } catch (IOException e) {
+            breaker.onFailure(e.getClass().getSimpleName());
+            throw new ApiUnavailableException("OpenAI injoignable: " + e, e);
+        } catch (Exception e) {
+            breaker.onIgnored();
+            throw e;
+        }
+
+        if (isOutageStatus(resp.statusCode())) {
+            breaker.onFailure("HTTP " + resp.statusCode());
+        } else {
+            breaker.onSuccess();
+        }
+        return resp;
+    }
+
+    private static boolean isOutageStatus(int status) {
+        return status == 401 || status == 403 || status == 408 || status == 429 || status >= 500;
+    }
+
+    /**
+     * Envoi avec hedging éventuel: si l'appel dépasse le seuil de latence du modèle, un doublon part;
+     * la première réponse 2xx gagne et l'autre requête est annulée.
+     * Les requêtes sont enregistrées dans le token: une annulation de la page les interrompt.
+     */
+    private HttpResponse<String> send(HttpRequest req, String model, CancelToken token) throws Exception {
+        long t0 = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> primary = token.register(sendTracked(req, model));
+        CompletableFuture<HttpResponse<String>> backup = null;
+        try {
+            Duration delay = hedging.hedgeDelay(model);
+            if (delay == null || !breaker.isClosed()) return await(primary);
+
+            try {
+                return primary.get(delay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException slow) {
+                if (!hedging.tryAcquireHedge()) return await(primary);
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+
+            log.info("OpenAI: hedging ({}) après {} ms", model, delay.toMillis());
+            metrics.retry("hedge");
+            backup = token.register(sendTracked(req, model));
+            HttpResponse<String> won = await(firstValid(primary, backup));
+            if (!primary.isDone()) {
+                // doublon gagnant: le primaire abandonné n'entre pas dans la fenêtre via sendTracked, et sans lui
+                // les appels lents disparaîtraient des mesures et le seuil de hedging baisserait.
+                // Son temps écoulé est un minorant de sa latence. Une page annulée, elle, ne mesure rien.
+                hedging.record(model, Duration.ofNanos(System.nanoTime() - t0));
+            }
+            return won;
+
+        } finally {
+            primary.cancel(true);
+            token.unregister(primary);
+            if (backup != null) {
+                backup.cancel(true);
+                token.unregister(backup);
+            }
+        }
+    }
+
+    /** HttpClient créé au premier appel (threads sélecteur et pool de connexions inutiles avant). */
+    private HttpClient http() {
+        HttpClient c = http;
+        if (c == null) {
+            synchronized (this) {
+                c = http;
+                if (c == null) {
+                    c = HttpClient.newBuilder()
+                            .connectTimeout(Duration.ofSeconds(20))
+                            .build();
+                    http = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    private CompletableFuture<HttpResponse<String>> sendTracked(HttpRequest req, String model) {
+        long t0 = System.nanoTime();
+        // on renvoie le future d'origine: c'est lui dont cancel() interrompt l'échange HTTP
+        CompletableFuture<HttpResponse<String>> f =
+                http().sendAsync(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        f.whenComplete((r, e) -> {
+            if (r != null && r.statusCode() < 300) {
+                hedging.record(model, Duration.ofNanos(System.nanoTime() - t0));
+            }
+        });
+        return f;
+    }
+
+    private static CompletableFuture<HttpResponse<String>> firstValid(CompletableFuture<HttpResponse<String>> a,
+                                                                      CompletableFuture<HttpResponse<String>> b) {
+        CompletableFuture<HttpResponse<String>> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        for (CompletableFuture<HttpResponse<String>> f : List.of(a, b)) {
+            f.whenComplete((r, e) -> {
+                if (r != null && r.statusCode() < 300) {
+                    winner.complete(r);
+                } else if (remaining.decrementAndGet() == 0) {
+                    // aucun des deux n'est valide: on remonte le dernier résultat (erreur HTTP ou exception)
+                    if (r != null) winner.complete(r);
+                    else winner.completeExceptionally(e);
+                }
+            });
+        }
+        return winner;
+    }
+
+    private static <T> T await(CompletableFuture<T> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable c = e.getCause();
+        if (c instanceof CompletionException && c.getCause() != null) c = c.getCause();
+        return c instanceof Exception ex ? ex : e;
+    }
+
+    private void recordUsage(JsonNode root, String requestedModel) {
+        JsonNode usage = root.get("usage");
+        if (usage == null || !usage.isObject()) return;
+        String m = root.hasNonNull("model") ? root.get("model").asText() : requestedModel;
+        metrics.tokens(m, usage.path("input_tokens").asLong(0), usage.path("output_tokens").asLong(0));
+    }
+
+    JsonNode parseJsonObject(String s) throws Exception {
+        return metrics.time(PipelineMetrics.JSON_PARSE, () -> readJsonObject(s));
+    }
+
+    private JsonNode readJsonObject(String s) throws Exception {
         String trimmed = s.trim();
 
         // parfois le modèle renvoie un bloc ```json ... ```
@@ -180,10 +394,15 @@ public class OpenAiResponsesService {
         return (v == null || v.isNull()) ? "" : v.asText("");
     }
 
-    private static String guessMime(Path p) {
-        String name = p.getFileName().toString().toLowerCase();
-        if (name.endsWith(".png")) return "image/png";
-        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return "image/jpeg";
+    static String toDataUrl(ByteBuffer bytes, String mime) {
+        ByteBuffer b64 = Base64.getEncoder().encode(bytes.duplicate());
+        return "data:" + mime + ";base64," + new String(b64.array(), 0, b64.limit(), StandardCharsets.ISO_8859_1);
+    }
+
+    static String guessMime(String name) {
+        String lower = name == null ? "" : name.toLowerCase();
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
         return "application/octet-stream";
     }
 }
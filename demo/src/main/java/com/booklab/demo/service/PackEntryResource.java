@@ -0,0 +1,110 @@
+package com.booklab.demo.service;
+
+import jakarta.servlet.ServletOutputStream;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Entrée d'une archive de document exposée comme Resource Spring (/storage/**, téléchargement du PDF).
+ * Le contenu est une vue sur le fichier mappé: à l'envoi, le buffer est passé tel quel
+ * au flux de sortie du conteneur (ServletOutputStream.write(ByteBuffer)), sans copie dans le heap.
+ */
+public class PackEntryResource extends AbstractResource {
+
+    private final Path packFile;
+    private final String name;
+    private final ByteBuffer content;
+
+    public PackEntryResource(Path packFile, String name, ByteBuffer content) {
+        this.packFile = packFile;
+        this.name = name;
+        this.content = content;
+    }
+
+    @Override
+    public String getDescription() {
+        return "entrée [" + name + "] de l'archive [" + packFile + "]";
+    }
+
+    @Override
+    public String getFilename() {
+        return name;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return content.remaining();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return Files.getLastModifiedTime(packFile).toMillis();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new BufferInputStream(content.duplicate());
+    }
+
+    @Override
+    public ReadableByteChannel readableChannel() {
+        return Channels.newChannel(getInputStream());
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+
+        @Override
+        public long transferTo(OutputStream out) throws IOException {
+            int n = buf.remaining();
+            if (out instanceof ServletOutputStream sos) {
+                sos.write(buf);
+                return n;
+            }
+            return super.transferTo(out);
+        }
+    }
+}
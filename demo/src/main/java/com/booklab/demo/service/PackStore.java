@@ -0,0 +1,320 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.DocumentStatus;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.PageInputType;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stockage "empaqueté" optionnel: les images des pages et le PDF d'un document sont regroupés
+ * dans doc-N/pages.pack (cf. DocumentPack), lu par mapping mémoire.
+ * Les documents existants sont migrés en tâche de fond, un par un, hors traitement en cours.
+ * Un fichier libre (ex: PDF régénéré) est toujours prioritaire sur l'archive, et réintégré au passage suivant.
+ *
+ * Seules les images propres au document sont empaquetées: une image utilisée aussi par un autre document
+ * reste un blob partagé (une copie pour tous), sinon chaque archive en garderait sa propre copie.
+ * Elle rejoint l'archive au premier passage où elle n'est plus partagée.
+ */
+@Service
+public class PackStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PackStore.class);
+
+    public static final String PACK_FILE = "pages.pack";
+    static final String PDF_ENTRY = "export.pdf";
+
+    private final Path root;
+    private final boolean enabled;
+    private final long migrateIntervalMinutes;
+    private final DocumentRepository documentRepo;
+    private final PageRepository pageRepo;
+    private final BlobStore blobs;
+    private final PageScheduler scheduler;
+
+    private final Map<Long, DocumentPack> open = new ConcurrentHashMap<>();
+    // documents avec un fichier libre écrit depuis le dernier passage (PDF régénéré)
+    private final Set<Long> loose = ConcurrentHashMap.newKeySet();
+    private volatile boolean scannedFolders;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "booklab-pack");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PackStore(@Value("${app.storage.root:data}") String rootDir,
+                     @Value("${app.storage.pack.enabled:false}") boolean enabled,
+                     @Value("${app.storage.pack.migrate-interval-minutes:10}") long migrateIntervalMinutes,
+                     DocumentRepository documentRepo,
+                     PageRepository pageRepo,
+                     BlobStore blobs,
+                     PageScheduler scheduler) {
+        this.root = Paths.get(rootDir).toAbsolutePath().normalize();
+        this.enabled = enabled;
+        this.migrateIntervalMinutes = migrateIntervalMinutes;
+        this.documentRepo = documentRepo;
+        this.pageRepo = pageRepo;
+        this.blobs = blobs;
+        this.scheduler = scheduler;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        if (!enabled || migrateIntervalMinutes <= 0) return;
+        timer.scheduleWithFixedDelay(this::migrateAll, 30, migrateIntervalMinutes * 60, TimeUnit.SECONDS);
+        log.info("Archives: migration en ligne toutes les {} min", migrateIntervalMinutes);
+    }
+
+    /** Image d'une page lue dans l'archive de son document, ou null si elle n'y est pas. */
+    public ByteBuffer readPageImage(Page page) throws IOException {
+        DocumentPack pack = pack(page.getDocument().getId());
+        if (pack == null) return null;
+        for (String name : candidateNames(page)) {
+            ByteBuffer b = pack.read(name);
+            if (b != null) return b;
+        }
+        return null;
+    }
+
+    /** Entrée d'archive pour un chemin relatif "doc-N/nom", ou null. */
+    public PackEntryResource resource(String relativePath) throws IOException {
+        ByteBuffer b = read(relativePath);
+        if (b == null) return null;
+        String[] parts = relativePath.split("/");
+        return new PackEntryResource(root.resolve(parts[0]).resolve(PACK_FILE), parts[1], b);
+    }
+
+    /** Contenu d'une entrée d'archive "doc-N/nom" (vue mappée en lecture seule), ou null. */
+    public ByteBuffer read(String relativePath) throws IOException {
+        String[] parts = relativePath.split("/");
+        if (parts.length != 2) return null;
+        Long docId = docId(parts[0]);
+        if (docId == null) return null;
+        DocumentPack pack = pack(docId);
+        return pack == null ? null : pack.read(parts[1]);
+    }
+
+    /** Oublie l'archive ouverte d'un document (avant suppression ou remplacement). */
+    public void evict(Long docId) {
+        DocumentPack p = open.remove(docId);
+        if (p != null) {
+            try {
+                p.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /** Un fichier libre vient d'être écrit dans doc-N (ex: PDF): à réintégrer au prochain passage. */
+    public void markLoose(Long docId) {
+        if (enabled) loose.add(docId);
+    }
+
+    /**
+     * Un passage de migration: libère les blobs rendus au passage précédent, puis empaquette les seuls documents
+     * qui ont quelque chose hors archive (pages libres en base, fichiers signalés par markLoose; au premier passage,
+     * dossiers doc-N contenant encore un fichier libre, écrit avant le démarrage).
+     */
+    void migrateAll() {
+        try {
+            blobs.collectGarbage();
+            Set<Long> candidates = new TreeSet<>(pageRepo.findDocumentIdsWithLoosePages());
+            if (!scannedFolders) {
+                candidates.addAll(foldersWithLooseFiles());
+                scannedFolders = true;
+            }
+            for (Long docId : loose) {
+                loose.remove(docId);
+                candidates.add(docId);
+            }
+
+            for (Long docId : candidates) {
+                Document doc = documentRepo.findById(docId).orElse(null);
+                if (doc == null) continue;
+                if (doc.getStatus() == DocumentStatus.PROCESSING || scheduler.isActive(docId)) {
+                    // repris au passage suivant (pages libres: par la requête; fichiers: via la liste)
+                    loose.add(docId);
+                    continue;
+                }
+                try {
+                    if (needsPacking(docId)) packDocument(docId);
+                } catch (Exception e) {
+                    loose.add(docId);
+                    log.warn("Archives: document {} non migré: {}", docId, e.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Archives: passage de migration interrompu: {}", e.getMessage());
+        }
+    }
+
+    private List<Long> foldersWithLooseFiles() {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                Long docId = docId(dir.getFileName().toString());
+                if (docId != null && !looseFiles(docId).isEmpty()) ids.add(docId);
+            }
+        } catch (IOException e) {
+            log.warn("Archives: parcours de {} impossible ({})", root, e.getMessage());
+        }
+        return ids;
+    }
+
+    boolean needsPacking(Long docId) throws IOException {
+        if (!looseFiles(docId).isEmpty()) return true;
+        DocumentPack pack = pack(docId);
+        Set<String> shared = sharedHashes(docId);
+        for (Page p : imagePages(docId)) {
+            if (stayShared(p, shared)) continue;
+            if (pack == null || !pack.contains(entryName(p))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * (Ré)écrit l'archive du document: images propres au document (sous leur hash, une seule fois chacune),
+     * PDF courant, puis bascule les pages dessus et supprime les fichiers libres intégrés.
+     * Les pages dont l'image est partagée avec un autre document restent sur leur blob.
+     * Les références BlobStore des pages sont rendues; le GC du passage suivant supprime les blobs orphelins
+     * (délai qui laisse finir une lecture éventuellement en cours sur l'ancien chemin).
+     */
+    synchronized void packDocument(Long docId) throws IOException {
+        Path dir = root.resolve("doc-" + docId);
+        Files.createDirectories(dir);
+        DocumentPack current = pack(docId);
+        Set<String> shared = sharedHashes(docId);
+        List<Page> pages = imagePages(docId).stream().filter(p -> !stayShared(p, shared)).toList();
+
+        Map<String, DocumentPack.Source> entries = new LinkedHashMap<>();
+        Map<Path, FileTime> packedLoose = new HashMap<>();
+        Map<Long, String> names = new HashMap<>();
+
+        for (Page p : pages) {
+            String name = entryName(p);
+            DocumentPack.Source src = current != null ? current.source(name) : null;
+            if (src == null) {
+                Path file = p.getImageHash() != null ? blobs.resolve(p.getImageHash()) : null;
+                if (file == null || !Files.exists(file)) file = root.resolve(p.getImagePath()).normalize();
+                if (p.getImageHash() == null) {
+                    // ancien document: on calcule l'identité au passage
+                    p.setImageHash(BlobStore.sha256(file));
+                    name = entryName(p);
+                }
+                src = DocumentPack.Source.of(file);
+                if (file.startsWith(dir)) packedLoose.put(file, Files.getLastModifiedTime(file));
+            }
+            entries.putIfAbsent(name, src);
+            names.put(p.getId(), name);
+        }
+
+        Path loosePdf = dir.resolve(PDF_ENTRY);
+        if (Files.exists(loosePdf)) {
+            packedLoose.put(loosePdf, Files.getLastModifiedTime(loosePdf));
+            entries.put(PDF_ENTRY, DocumentPack.Source.of(loosePdf));
+        } else if (current != null && current.contains(PDF_ENTRY)) {
+            entries.put(PDF_ENTRY, current.source(PDF_ENTRY));
+        }
+
+        DocumentPack.write(dir.resolve(PACK_FILE), entries);
+        evict(docId);
+
+        for (Page p : pages) {
+            String target = "doc-" + docId + "/" + names.get(p.getId());
+            if (target.equals(p.getImagePath())) continue;
+            // mise à jour ciblée: l'entité a été lue avant l'écriture de l'archive, le traitement a pu la modifier depuis
+            if (pageRepo.moveImage(p.getId(), p.getImagePath(), target, p.getImageHash()) == 0) continue;
+            if (BlobStore.isBlobPath(p.getImagePath())) blobs.release(p.getImageHash());
+        }
+
+        // fichiers libres désormais dans l'archive (sauf s'ils ont été réécrits entre-temps)
+        for (Map.Entry<Path, FileTime> e : packedLoose.entrySet()) {
+            if (Files.exists(e.getKey()) && Files.getLastModifiedTime(e.getKey()).equals(e.getValue())) {
+                Files.delete(e.getKey());
+            }
+        }
+        log.info("Archives: document {} empaqueté ({} entrées, {} images partagées laissées en blob)",
+                docId, entries.size(), shared.size());
+    }
+
+    private DocumentPack pack(Long docId) throws IOException {
+        DocumentPack p = open.get(docId);
+        if (p != null) return p;
+        Path file = root.resolve("doc-" + docId).resolve(PACK_FILE);
+        if (!Files.exists(file)) return null;
+        DocumentPack opened = DocumentPack.open(file);
+        DocumentPack raced = open.putIfAbsent(docId, opened);
+        if (raced != null) {
+            opened.close();
+            return raced;
+        }
+        return opened;
+    }
+
+    private Set<String> sharedHashes(Long docId) {
+        return new HashSet<>(pageRepo.findImageHashesSharedWithOtherDocuments(docId));
+    }
+
+    /** Page sur un blob que d'autres documents utilisent aussi: pas de copie dans l'archive. */
+    private static boolean stayShared(Page p, Set<String> shared) {
+        return BlobStore.isBlobPath(p.getImagePath()) && shared.contains(p.getImageHash());
+    }
+
+    private List<Page> imagePages(Long docId) {
+        return pageRepo.findByDocumentIdOrderByPageNumberAsc(docId).stream()
+                .filter(p -> p.getInputType() == PageInputType.IMAGE && p.getImagePath() != null)
+                .toList();
+    }
+
+    private List<Path> looseFiles(Long docId) throws IOException {
+        Path dir = root.resolve("doc-" + docId);
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(f -> !f.getFileName().toString().startsWith(PACK_FILE))
+                    .toList();
+        }
+    }
+
+    private static List<String> candidateNames(Page p) {
+        List<String> names = new ArrayList<>(2);
+        String path = p.getImagePath();
+        if (path != null && path.startsWith("doc-")) names.add(path.substring(path.indexOf('/') + 1));
+        if (p.getImageHash() != null) names.add(entryName(p));
+        return names;
+    }
+
+    private static String entryName(Page p) {
+        String path = p.getImagePath();
+        int dot = path.lastIndexOf('.');
+        String ext = dot > path.lastIndexOf('/') ? path.substring(dot) : ".bin";
+        return (p.getImageHash() != null ? p.getImageHash() : "page-" + p.getPageNumber()) + ext;
+    }
+
+    private static Long docId(String folder) {
+        if (!folder.startsWith("doc-")) return null;
+        try {
+            return Long.valueOf(folder.substring(4));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.booklab.demo.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ordonnanceur équitable des pages entre documents (stride scheduling).
+ * Chaque document actif a sa file de pages; à chaque worker libre on prend la page du document
+ * dont le "pass" est le plus petit, puis on l'avance de STRIDE / priorité.
+ * Un document prioritaire reçoit donc proportionnellement plus de créneaux, et un petit document
+ * n'attend jamais la fin d'un gros livre soumis avant lui.
+ * Gère aussi l'annulation, les délais max par page / par document, et la mise en pause
+ * quand le disjoncteur OpenAI est ouvert (un seul appel de test, reprise automatique).
+ */
+@Component
+public class PageScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(PageScheduler.class);
+
+    public static final int MIN_PRIORITY = 1;
+    public static final int MAX_PRIORITY = 10;
+    public static final int DEFAULT_PRIORITY = 5;
+
+    private static final long STRIDE = 1L << 20;
+
+    /**
+     * Traitement d'une page; le token signale annulation / délai dépassé.
+     * Retourne false si la page doit être remise en file (API indisponible).
+     */
+    @FunctionalInterface
+    public interface PageTask {
+        boolean run(Long pageId, CancelToken token);
+    }
+
+    private final TaskExecutor executor;
+    private final OpenAiCircuitBreaker breaker;
+    private final int workers;
+    private final int defaultMaxParallel;
+    private final Duration pageDeadline;
+    private final Duration documentDeadline;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "booklab-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<Long, DocQueue> queues = new LinkedHashMap<>();
+    // documents sans page en cours à finaliser (vide ou annulé): attendent un créneau libre comme une page
+    private final Deque<DocQueue> finishing = new ArrayDeque<>();
+    private int running;
+    private long virtualTime;
+    private boolean probing;
+    private ScheduledFuture<?> wake;
+
+    public PageScheduler(TaskExecutor taskExecutor,
+                         OpenAiCircuitBreaker breaker,
+                         @Value("${app.processing.workers:2}") int workers,
+                         @Value("${app.processing.max-parallel-per-document:2}") int defaultMaxParallel,
+                         @Value("${app.processing.page-deadline-seconds:0}") long pageDeadlineSeconds,
+                         @Value("${app.processing.document-deadline-minutes:0}") long documentDeadlineMinutes,
+                         MeterRegistry registry) {
+        this.executor = taskExecutor;
+        this.breaker = breaker;
+        this.workers = workers;
+        this.defaultMaxParallel = defaultMaxParallel;
+        this.pageDeadline = pageDeadlineSeconds > 0 ? Duration.ofSeconds(pageDeadlineSeconds) : null;
+        this.documentDeadline = documentDeadlineMinutes > 0 ? Duration.ofMinutes(documentDeadlineMinutes) : null;
+
+        Gauge.builder("booklab.scheduler.pending", this, PageScheduler::pendingPages)
+                .description("Pages en attente d'un worker, tous documents confondus")
+                .register(registry);
+        Gauge.builder("booklab.scheduler.documents", this, PageScheduler::activeDocuments)
+                .description("Documents en cours de traitement")
+                .register(registry);
+    }
+
+    /**
+     * Ajoute un document à l'ordonnancement.
+     * pageTask est exécuté sur un worker pour chaque page; onComplete une fois la dernière page terminée,
+     * avec la raison d'annulation (null si le document est allé au bout).
+     * Retourne false si le document est déjà en cours.
+     */
+    public synchronized boolean submit(Long documentId,
+                                       List<Long> pageIds,
+                                       int priority,
+                                       Integer maxParallel,
+                                       PageTask pageTask,
+                                       Consumer<String> onComplete) {
+        if (isActive(documentId)) return false;
+
+        int weight = Math.max(MIN_PRIORITY, Math.min(MAX_PRIORITY, priority));
+        int cap = (maxParallel == null || maxParallel < 1) ? defaultMaxParallel : maxParallel;
+
+        DocQueue q = new DocQueue(documentId, new ArrayDeque<>(pageIds), weight, cap, pageTask, onComplete);
+        q.pass = virtualTime;
+        queues.put(documentId, q);
+        log.info("Scheduler: document {} ajouté ({} pages, priorité {}, max {} en parallèle)",
+                documentId, pageIds.size(), weight, cap);
+
+        if (q.pending.isEmpty()) {
+            // rien à traiter: on passe directement à la finalisation (dès qu'un créneau se libère)
+            queues.remove(documentId);
+            finishing.add(q);
+            pump();
+            return true;
+        }
+
+        if (documentDeadline != null) {
+            q.deadline = timer.schedule(() -> cancel(documentId, "délai document dépassé"),
+                    documentDeadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        pump();
+        return true;
+    }
+
+    /**
+     * Annule le traitement d'un document: les pages non démarrées sont retirées de la file (et renvoyées),
+     * les pages en cours sont annulées (appels HTTP interrompus). La finalisation suit quand elles ont rendu la main.
+     * Retourne null si le document n'est pas en cours.
+     */
+    public List<Long> cancel(Long documentId, String reason) {
+        List<CancelToken> tokens;
+        List<Long> unstarted;
+        synchronized (this) {
+            DocQueue q = queues.get(documentId);
+            if (q == null) return null;
+            if (q.cancelReason == null) q.cancelReason = reason;
+            unstarted = new ArrayList<>(q.pending);
+            q.pending.clear();
+            tokens = new ArrayList<>(q.runningTokens.values());
+            if (q.running == 0) {
+                // aucune page en cours pour déclencher la finalisation: on la met en file ici
+                queues.remove(documentId);
+                finishing.add(q);
+                pump();
+            }
+        }
+        log.info("Scheduler: document {} annulé ({}), {} pages non démarrées, {} en cours",
+                documentId, reason, unstarted.size(), tokens.size());
+        tokens.forEach(t -> t.cancel(reason));
+        return unstarted;
+    }
+
+    public synchronized boolean isActive(Long documentId) {
+        if (queues.containsKey(documentId)) return true;
+        for (DocQueue q : finishing) {
+            if (q.documentId.equals(documentId)) return true;
+        }
+        return false;
+    }
+
+    public synchronized int pendingPages() {
+        int n = 0;
+        for (DocQueue q : queues.values()) n += q.pending.size();
+        return n;
+    }
+
+    public synchronized int activeDocuments() {
+        return queues.size() + finishing.size();
+    }
+
+    /** Créneaux occupés (pages en cours + finalisations); jamais plus que workers. */
+    public synchronized int runningSlots() {
+        return running;
+    }
+
+    // appelé sous verrou; seul endroit (avec la fin d'une page qui garde son créneau) où running augmente
+    private void pump() {
+        while (running < workers) {
+            DocQueue done = finishing.poll();
+            if (done != null) {
+                running++;
+                executor.execute(() -> complete(done));
+                continue;
+            }
+            if (!breaker.isClosed()) {
+                // disjoncteur ouvert: les pages restent en file; un seul appel de test à la fois
+                if (probing || !breaker.canProbe()) return;
+                Duration wait = breaker.untilProbe();
+                if (!wait.isZero()) {
+                    wakeIn(wait);
+                    return;
+                }
+                dispatchNext(true);
+                return;
+            }
+            if (!dispatchNext(false)) return;
+        }
+    }
+
+    // appelé sous verrou
+    private boolean dispatchNext(boolean probe) {
+        DocQueue next = null;
+        for (DocQueue q : queues.values()) {
+            if (q.pending.isEmpty() || q.running >= q.maxParallel) continue;
+            if (next == null || q.pass < next.pass) next = q;
+        }
+        if (next == null) return false;
+
+        Long pageId = next.pending.poll();
+        next.running++;
+        running++;
+        virtualTime = next.pass;
+        next.pass += STRIDE / next.priority;
+        if (probe) probing = true;
+
+        CancelToken token = new CancelToken();
+        next.runningTokens.put(pageId, token);
+
+        DocQueue q = next;
+        executor.execute(() -> runPage(q, pageId, token, probe));
+        return true;
+    }
+
+    // appelé sous verrou
+    private void wakeIn(Duration wait) {
+        if (wake != null && !wake.isDone()) return;
+        wake = timer.schedule(() -> {
+            synchronized (this) {
+                wake = null;
+                pump();
+            }
+        }, wait.toMillis() + 50, TimeUnit.MILLISECONDS);
+    }
+
+    private void runPage(DocQueue q, Long pageId, CancelToken token, boolean probe) {
+        ScheduledFuture<?> deadline = pageDeadline == null ? null
+                : timer.schedule(() -> token.expire("délai page dépassé (" + pageDeadline.toSeconds() + "s)"),
+                        pageDeadline.toMillis(), TimeUnit.MILLISECONDS);
+        boolean done = true;
+        try {
+            done = q.pageTask.run(pageId, token);
+        } catch (RuntimeException e) {
+            log.warn("Scheduler: page {} (document {}) en erreur: {}", pageId, q.documentId, e.getMessage());
+        } finally {
+            if (deadline != null) deadline.cancel(false);
+        }
+
+        boolean finished;
+        synchronized (this) {
+            q.running--;
+            q.runningTokens.remove(pageId);
+            if (probe) probing = false;
+            if (!done && q.cancelReason == null) {
+                // API indisponible: la page reprend sa place en tête de file
+                q.pending.addFirst(pageId);
+            }
+            finished = q.pending.isEmpty() && q.running == 0;
+            if (finished) {
+                queues.remove(q.documentId);
+            } else {
+                running--;
+                pump();
+            }
+        }
+
+        // la finalisation (statut + PDF) garde le créneau du worker
+        if (finished) complete(q);
+    }
+
+    private void complete(DocQueue q) {
+        try {
+            if (q.deadline != null) q.deadline.cancel(false);
+            q.onComplete.accept(q.cancelReason);
+        } catch (RuntimeException e) {
+            log.warn("Scheduler: finalisation du document {} en erreur: {}", q.documentId, e.getMessage());
+        } finally {
+            synchronized (this) {
+                running--;
+                pump();
+            }
+        }
+    }
+
+    private static final class DocQueue {
+        final Long documentId;
+        final Deque<Long> pending;
+        final int priority;
+        final int maxParallel;
+        final PageTask pageTask;
+        final Consumer<String> onComplete;
+        final Map<Long, CancelToken> runningTokens = new HashMap<>();
+        int running;
+        long pass;
+        String cancelReason;
+        ScheduledFuture<?> deadline;
+
+        DocQueue(Long documentId, Deque<Long> pending, int priority, int maxParallel,
+                 PageTask pageTask, Consumer<String> onComplete) {
+            this.documentId = documentId;
+            this.pending = pending;
+            this.priority = priority;
+            this.maxParallel = maxParallel;
+            this.pageTask = pageTask;
+            this.onComplete = onComplete;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.booklab.demo.repo.PageRepository;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
@@ -14,7 +15,9 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+/** Bean paresseux: créé au premier export (cf. injections @Lazy). */
 @Service
+@Lazy
 public class PdfExportService {
 
     private static final Logger log = LoggerFactory.getLogger(PdfExportService.class);
@@ -22,11 +25,14 @@ public class PdfExportService {
     private final DocumentRepository documentRepo;
     private final PageRepository pageRepo;
     private final StorageService storage;
+    private final PipelineMetrics metrics;
 
-    public PdfExportService(DocumentRepository documentRepo, PageRepository pageRepo, StorageService storage) {
+    public PdfExportService(DocumentRepository documentRepo, PageRepository pageRepo, StorageService storage,
+                            PipelineMetrics metrics) {
         this.documentRepo = documentRepo;
         this.pageRepo = pageRepo;
         this.storage = storage;
+        this.metrics = metrics;
     }
 
     public void generatePdfForDocument(Long documentId) throws Exception {
@@ -39,6 +45,16 @@ public class PdfExportService {
 
         byte[] hebFont = loadFontBytes("fonts/NotoSansHebrew-Regular.ttf");
 
+        byte[] pdfBytes = metrics.time(PipelineMetrics.PDF_RENDER, () -> renderPdf(xhtml, hebFont));
+
+        String rel = storage.saveDocumentPdf(documentId, pdfBytes);
+        doc.setPdfPath(rel);
+        documentRepo.save(doc);
+
+        log.info("PDF: done for document {} -> {}", documentId, rel);
+    }
+
+    static byte[] renderPdf(String xhtml, byte[] hebFont) throws IOException {
         try (ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 256)) {
             PdfRendererBuilder builder = new PdfRendererBuilder();
             builder.useFastMode();
@@ -53,17 +69,11 @@ public class PdfExportService {
 
             builder.toStream(out);
             builder.run();
-
-            byte[] pdfBytes = out.toByteArray();
-            String rel = storage.saveDocumentPdf(documentId, pdfBytes);
-            doc.setPdfPath(rel);
-            documentRepo.save(doc);
-
-            log.info("PDF: done for document {} -> {}", documentId, rel);
+            return out.toByteArray();
         }
     }
 
-    private static byte[] loadFontBytes(String cp) {
+    static byte[] loadFontBytes(String cp) {
         try (InputStream in = new ClassPathResource(cp).getInputStream()) {
             return in.readAllBytes();
         } catch (Exception e) {
@@ -71,7 +81,7 @@ public class PdfExportService {
         }
     }
 
-    private static String buildXhtml(Document doc, List<Page> pages) {
+    static String buildXhtml(Document doc, List<Page> pages) {
         StringBuilder sb = new StringBuilder(64_000);
         sb.append("<!DOCTYPE html>")
           .append("<html xmlns=\"http://www.w3.org/1999/xhtml\" lang=\"fr\">")
@@ -108,7 +118,7 @@ public class PdfExportService {
         return sb.toString();
     }
 
-    private static String escapeXml(String s) {
+    static String escapeXml(String s) {
         if (s == null) return "";
         return s.replace("&", "&amp;")
                 .replace("<", "&lt;")
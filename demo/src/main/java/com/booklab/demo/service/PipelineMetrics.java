@@ -0,0 +1,105 @@
+package com.booklab.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Point central des métriques du pipeline (upload -> OpenAI -> DB -> PDF).
+ * Exposées en Prometheus via /actuator/prometheus.
+ * Le débit pages/minute se lit avec rate(booklab_pages_processed_total[1m]) * 60.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String UPLOAD = "upload";
+    public static final String IMAGE_READ = "image_read";
+    public static final String MODEL_CALL = "model_call";
+    public static final String JSON_PARSE = "json_parse";
+    public static final String DB_SAVE = "db_save";
+    public static final String PDF_RENDER = "pdf_render";
+
+    private final MeterRegistry registry;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> T time(String stage, Callable<T> work) throws Exception {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            return work.call();
+        } catch (Exception e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            sample.stop(stageTimer(stage, outcome));
+        }
+    }
+
+    public void pageProcessed(boolean ok, Duration took) {
+        String status = ok ? "done" : "failed";
+        Counter.builder("booklab.pages.processed")
+                .description("Pages traitées (DONE ou FAILED)")
+                .tag("status", status)
+                .register(registry)
+                .increment();
+        Timer.builder("booklab.page.duration")
+                .description("Latence de bout en bout d'une page (lecture -> DB)")
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(took);
+    }
+
+    public void tokens(String model, long input, long output) {
+        if (input > 0) tokenCounter(model, "input").increment(input);
+        if (output > 0) tokenCounter(model, "output").increment(output);
+    }
+
+    public void retry(String reason) {
+        Counter.builder("booklab.openai.retries")
+                .description("Nouvelles tentatives d'appel OpenAI")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void cache(String cache, boolean hit) {
+        Counter.builder("booklab.cache.requests")
+                .description("Accès cache (hit/miss)")
+                .tag("cache", cache)
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry)
+                .increment();
+    }
+
+    public void spreadSplit() {
+        Counter.builder("booklab.ingest.spreads")
+                .description("Doubles pages coupées en deux à l'import")
+                .register(registry)
+                .increment();
+    }
+
+    private Timer stageTimer(String stage, String outcome) {
+        return Timer.builder("booklab.stage.duration")
+                .description("Latence par étape du pipeline")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter tokenCounter(String model, String kind) {
+        return Counter.builder("booklab.openai.tokens")
+                .description("Tokens consommés (champ usage de la réponse)")
+                .tag("model", model == null ? "unknown" : model)
+                .tag("kind", kind)
+                .register(registry);
+    }
+}
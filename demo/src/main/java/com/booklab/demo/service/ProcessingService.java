@@ -5,11 +5,16 @@ import com.booklab.demo.repo.DocumentRepository;
 import com.booklab.demo.repo.PageRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Path;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ProcessingService {
@@ -21,73 +26,210 @@ public class ProcessingService {
     private final StorageService storage;
     private final OpenAiResponsesService openai;
     private final PdfExportService pdfExport;
+    private final PipelineMetrics metrics;
+    private final PageScheduler scheduler;
+    private final BlobStore blobs;
+    private final Map<Long, CompletableFuture<Void>> completions = new ConcurrentHashMap<>();
+    private final Object submitLock = new Object();
 
     public ProcessingService(DocumentRepository documentRepo,
                              PageRepository pageRepo,
                              StorageService storage,
-                             OpenAiResponsesService openai,
-                             PdfExportService pdfExport) {
+                             @Lazy OpenAiResponsesService openai,
+                             @Lazy PdfExportService pdfExport,
+                             PipelineMetrics metrics,
+                             PageScheduler scheduler,
+                             BlobStore blobs) {
         this.documentRepo = documentRepo;
         this.pageRepo = pageRepo;
         this.storage = storage;
         this.openai = openai;
         this.pdfExport = pdfExport;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        this.blobs = blobs;
     }
 
-    @Async
-    public void processDocument(Long documentId) {
-        Document doc = documentRepo.findById(documentId).orElseThrow();
+    public boolean processDocument(Long documentId) {
+        return processDocument(documentId, PageScheduler.DEFAULT_PRIORITY, null);
+    }
 
-        if (doc.getStatus() == DocumentStatus.PROCESSING) {
-            log.info("Document {} déjà en PROCESSING -> skip", documentId);
-            return;
+    /**
+     * Planifie les pages non DONE du document dans l'ordonnanceur équitable.
+     * Retourne false si le document est déjà en cours de traitement (statut inchangé).
+     */
+    public boolean processDocument(Long documentId, int priority, Integer maxParallel) {
+        // vérification, passage en PROCESSING et soumission d'un seul tenant: deux /process simultanés
+        // ne peuvent pas tous deux marquer le document puis se le disputer dans l'ordonnanceur
+        synchronized (submitLock) {
+            Document doc = documentRepo.findById(documentId).orElseThrow();
+
+            if (scheduler.isActive(documentId)) {
+                log.info("Document {} déjà en PROCESSING -> skip", documentId);
+                return false;
+            }
+
+            List<Long> todo = pageRepo.findByDocumentIdOrderByPageNumberAsc(documentId).stream()
+                    .filter(p -> p.getStatus() != PageStatus.DONE)
+                    .map(Page::getId)
+                    .toList();
+
+            // PROCESSING avant la soumission: la finalisation peut suivre immédiatement et doit avoir le dernier mot
+            DocumentStatus previous = doc.getStatus();
+            doc.setStatus(DocumentStatus.PROCESSING);
+            documentRepo.save(doc);
+
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            completions.put(documentId, done);
+            boolean submitted = scheduler.submit(documentId, todo, priority, maxParallel, this::processPage,
+                    cancelReason -> {
+                        try {
+                            finishDocument(documentId, cancelReason);
+                        } finally {
+                            completions.remove(documentId, done);
+                            done.complete(null);
+                        }
+                    });
+            if (!submitted) {
+                completions.remove(documentId, done);
+                doc.setStatus(previous);
+                documentRepo.save(doc);
+                log.info("Document {} refusé par l'ordonnanceur -> statut {} rétabli", documentId, previous);
+            }
+            return submitted;
         }
+    }
 
-        doc.setStatus(DocumentStatus.PROCESSING);
-        documentRepo.save(doc);
+    /** Se termine quand le traitement en cours du document est fini (statut final et PDF écrits). */
+    public CompletableFuture<Void> completion(Long documentId) {
+        CompletableFuture<Void> f = completions.get(documentId);
+        return f != null ? f : CompletableFuture.completedFuture(null);
+    }
 
-        List<Page> pages = pageRepo.findByDocumentIdOrderByPageNumberAsc(documentId);
-        boolean anyFailed = false;
+    /**
+     * Annule le traitement en cours: les pages non démarrées repassent en PENDING,
+     * les appels OpenAI en vol sont interrompus. Retourne false si rien n'était en cours.
+     */
+    public boolean cancelProcessing(Long documentId) {
+        List<Long> unstarted = scheduler.cancel(documentId, "annulé par l'utilisateur");
+        if (unstarted == null) return false;
 
+        List<Page> pages = pageRepo.findAllById(unstarted);
         for (Page p : pages) {
-            if (p.getStatus() == PageStatus.DONE) continue;
-
-            p.setStatus(PageStatus.PROCESSING);
+            p.setStatus(PageStatus.PENDING);
             p.setError(null);
-            pageRepo.save(p);
+        }
+        pageRepo.saveAll(pages);
+        return true;
+    }
+
+    /**
+     * Supprime un document, ses pages et ses fichiers; les images partagées avec d'autres documents
+     * restent en place (références du BlobStore), les autres partent au GC.
+     * Retourne false si le document est en cours de traitement.
+     */
+    public boolean deleteDocument(Long documentId) throws IOException {
+        if (scheduler.isActive(documentId)) return false;
+        Document doc = documentRepo.findById(documentId).orElseThrow();
+
+        List<Page> pages = pageRepo.findByDocumentIdOrderByPageNumberAsc(documentId);
+        pageRepo.deleteAll(pages);
+        documentRepo.delete(doc);
+        for (Page p : pages) {
+            // les pages déjà empaquetées ne détiennent plus de référence BlobStore
+            if (BlobStore.isBlobPath(p.getImagePath())) blobs.release(p.getImageHash());
+            // double page d'origine: une référence par moitié, jamais empaquetée
+            blobs.release(p.getSourceHash());
+        }
 
-            try {
-                OpenAiResponsesService.ExtractTranslateResult res;
+        storage.deleteDocumentFiles(documentId);
+        blobs.collectGarbage();
+        log.info("Document {} supprimé ({} pages)", documentId, pages.size());
+        return true;
+    }
+
+    boolean processPage(Long pageId, CancelToken token) {
+        Page p = pageRepo.findById(pageId).orElse(null);
+        if (p == null || p.getStatus() == PageStatus.DONE) return true;
+
+        long started = System.nanoTime();
+        p.setStatus(PageStatus.PROCESSING);
+        p.setError(null);
+        pageRepo.save(p);
 
-                if (p.getInputType() == PageInputType.TEXT) {
-                    String heb = p.getHebrewInputText();
-                    if (heb == null || heb.isBlank()) {
-                        throw new IllegalStateException("TEXT page without hebrewInputText");
-                    }
-                    res = openai.nikudAndTranslateFromText(heb);
+        try {
+            OpenAiResponsesService.ExtractTranslateResult res;
+
+            if (p.getInputType() == PageInputType.TEXT) {
+                String heb = p.getHebrewInputText();
+                if (heb == null || heb.isBlank()) {
+                    throw new IllegalStateException("TEXT page without hebrewInputText");
+                }
+                res = openai.nikudAndTranslateFromText(heb, token);
+            } else {
+                if (p.getImagePath() == null || p.getImagePath().isBlank()) {
+                    throw new IllegalStateException("IMAGE page without imagePath");
+                }
+                Page same = findProcessedDuplicate(p);
+                if (same != null) {
+                    // même image déjà traitée (autre page ou autre document): pas d'appel OpenAI
+                    res = new OpenAiResponsesService.ExtractTranslateResult(
+                            same.getHebrewPlain(), same.getHebrewNikud(), same.getFrText());
+                    log.info("Page {}: image identique à la page {}, résultat réutilisé", p.getId(), same.getId());
                 } else {
-                    if (p.getImagePath() == null || p.getImagePath().isBlank()) {
-                        throw new IllegalStateException("IMAGE page without imagePath");
-                    }
-                    Path img = storage.resolvePath(p.getImagePath());
-                    res = openai.extractTranslateFromImage(img);
+                    ByteBuffer img = storage.readPageImage(p);
+                    res = openai.extractTranslateFromImage(img, p.getImagePath(), token);
                 }
+            }
+
+            p.setHebrewPlain(res.hebrewPlain());
+            p.setHebrewNikud(res.hebrewNikud());
+            p.setFrText(res.frText());
+            p.setStatus(PageStatus.DONE);
+            p.setError(null);
+            metrics.time(PipelineMetrics.DB_SAVE, () -> pageRepo.save(p));
+            metrics.pageProcessed(true, Duration.ofNanos(System.nanoTime() - started));
+            return true;
 
-                p.setHebrewPlain(res.hebrewPlain());
-                p.setHebrewNikud(res.hebrewNikud());
-                p.setFrText(res.frText());
-                p.setStatus(PageStatus.DONE);
+        } catch (Exception e) {
+            if (token.isCancelled() && !token.isExpired()) {
+                // annulation: la page pourra être relancée
+                p.setStatus(PageStatus.PENDING);
                 p.setError(null);
                 pageRepo.save(p);
-
-            } catch (Exception e) {
-                anyFailed = true;
-                p.setStatus(PageStatus.FAILED);
-                p.setError(shortMsg(e));
+                log.info("Page {} annulée -> PENDING", p.getId());
+                return true;
+            }
+            if (e instanceof OpenAiCircuitBreaker.CircuitOpenException
+                    || e instanceof OpenAiResponsesService.ApiUnavailableException) {
+                // panne OpenAI, disjoncteur ouvert ou pas encore: on ne brûle pas la page, elle repart en file.
+                // Les échecs consécutifs ouvrent le disjoncteur, qui espace alors les nouvelles tentatives.
+                p.setStatus(PageStatus.PENDING);
+                p.setError(null);
                 pageRepo.save(p);
-                log.warn("Page {} FAILED: {}", p.getId(), e.getMessage());
+                log.info("Page {} en attente (OpenAI indisponible)", p.getId());
+                return false;
             }
+            p.setStatus(PageStatus.FAILED);
+            p.setError(token.isExpired() ? token.reason() : shortMsg(e));
+            pageRepo.save(p);
+            metrics.pageProcessed(false, Duration.ofNanos(System.nanoTime() - started));
+            log.warn("Page {} FAILED: {}", p.getId(), e.getMessage());
+            return true;
+        }
+    }
+
+    void finishDocument(Long documentId, String cancelReason) {
+        Document doc = documentRepo.findById(documentId).orElseThrow();
+
+        if (cancelReason != null) {
+            // traitement interrompu: pages restantes en PENDING, on peut relancer plus tard
+            log.info("Document {} interrompu: {}", documentId, cancelReason);
+            doc.setStatus(DocumentStatus.UPLOADED);
+            documentRepo.save(doc);
+            return;
         }
+        boolean anyFailed = pageRepo.countByDocumentIdAndStatus(documentId, PageStatus.FAILED) > 0;
 
         doc.setStatus(anyFailed ? DocumentStatus.DONE_WITH_ERRORS : DocumentStatus.DONE);
         documentRepo.save(doc);
@@ -97,11 +239,20 @@ public class ProcessingService {
             pdfExport.generatePdfForDocument(documentId);
         } catch (Exception e) {
             log.warn("PDF generation failed for doc {}: {}", documentId, e.getMessage());
+            doc = documentRepo.findById(documentId).orElseThrow();
             doc.setStatus(DocumentStatus.DONE_WITH_ERRORS);
             documentRepo.save(doc);
         }
     }
 
+    private Page findProcessedDuplicate(Page p) {
+        if (p.getImageHash() == null) return null;
+        Page same = pageRepo.findFirstByImageHashAndStatusAndIdNot(p.getImageHash(), PageStatus.DONE, p.getId())
+                .orElse(null);
+        metrics.cache("page_result", same != null);
+        return same;
+    }
+
     private static String shortMsg(Exception e) {
         String m = e.getMessage();
         if (m == null) m = e.getClass().getSimpleName();
@@ -0,0 +1,314 @@
+package com.booklab.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Étape d'ingestion après StorageService.savePageImage: repère les doubles pages (livre ouvert scanné
+ * en une image) et les coupe en deux pages, droite puis gauche (lecture de droite à gauche).
+ *
+ * Détection: image nettement plus large que haute, puis profil de luminosité par colonne
+ * (image sous-échantillonnée, bande centrale en hauteur): la reliure est une vallée sombre et étroite
+ * près du milieu, bien en dessous de la luminosité médiane des colonnes. Une page isolée au format
+ * paysage n'a pas cette vallée et reste entière. Une image JPEG dont l'orientation EXIF n'est pas la normale
+ * (scan pivoté ou retourné) reste aussi entière: les pixels stockés ne sont pas ceux affichés.
+ *
+ * Les moitiés sont réencodées: en PNG (sans perte, fichiers plus lourds) si app.spread.lossless,
+ * sinon dans le format d'origine, à la qualité app.spread.jpeg-quality pour un JPEG. Chaque réencodage JPEG
+ * perd un peu de détail, et l'OCR travaille sur ces moitiés.
+ */
+@Service
+public class SpreadSplitter {
+
+    private static final Logger log = LoggerFactory.getLogger(SpreadSplitter.class);
+
+    /** Largeur visée pour l'analyse (sous-échantillonnage au décodage). */
+    private static final int PROFILE_WIDTH = 800;
+
+    /** Résultat de l'analyse; gutterX en pixels de l'image d'origine (-1 si pas de double page). */
+    public record Detection(int width, int height, int gutterX) {
+        public boolean spread() {
+            return gutterX > 0;
+        }
+
+        public int pages() {
+            return spread() ? 2 : 1;
+        }
+    }
+
+    private final BlobStore blobs;
+    private final PipelineMetrics metrics;
+    private final boolean enabled;
+    private final double minAspect;
+    private final double minGutterContrast;
+    private final double searchBand;
+    private final double maxGutterWidth;
+    private final boolean lossless;
+    private final float jpegQuality;
+
+    public SpreadSplitter(BlobStore blobs,
+                          PipelineMetrics metrics,
+                          @Value("${app.spread.enabled:true}") boolean enabled,
+                          @Value("${app.spread.min-aspect:1.2}") double minAspect,
+                          @Value("${app.spread.min-gutter-contrast:0.2}") double minGutterContrast,
+                          @Value("${app.spread.search-band:0.15}") double searchBand,
+                          @Value("${app.spread.max-gutter-width:0.08}") double maxGutterWidth,
+                          @Value("${app.spread.lossless:false}") boolean lossless,
+                          @Value("${app.spread.jpeg-quality:0.95}") float jpegQuality) {
+        this.blobs = blobs;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.minAspect = minAspect;
+        this.minGutterContrast = minGutterContrast;
+        this.searchBand = searchBand;
+        this.maxGutterWidth = maxGutterWidth;
+        this.lossless = lossless;
+        this.jpegQuality = Math.max(0.1f, Math.min(1f, jpegQuality));
+    }
+
+    /**
+     * Pages à créer pour une image déposée: [droite, gauche] si c'est une double page, sinon l'image telle quelle.
+     * L'image d'origine d'une double page reste dans le BlobStore avec une référence par moitié:
+     * l'appelant la note dans Page.sourceHash (export des images d'origine).
+     */
+    public List<BlobStore.BlobRef> split(BlobStore.BlobRef image) throws IOException {
+        if (!enabled) return List.of(image);
+        Path file = blobs.resolve(image.hash());
+        if (file == null) return List.of(image);
+
+        Detection d = detect(file);
+        if (!d.spread()) return List.of(image);
+
+        String ext = lossless ? ".png" : ext(image.path());
+        BlobStore.BlobRef right = blobs.put(crop(file, new Rectangle(d.gutterX(), 0, d.width() - d.gutterX(), d.height())), ext);
+        BlobStore.BlobRef left = blobs.put(crop(file, new Rectangle(0, 0, d.gutterX(), d.height())), ext);
+        blobs.retain(image.hash());
+        metrics.spreadSplit();
+        log.info("Double page {} ({}x{}) coupée à x={}", image.hash(), d.width(), d.height(), d.gutterX());
+        return List.of(right, left);
+    }
+
+    /** Analyse seule, sans découpe ni écriture dans le BlobStore. */
+    Detection detect(Path file) {
+        if (!enabled) return new Detection(0, 0, -1);
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = reader(in);
+            if (reader == null) return new Detection(0, 0, -1);
+            try {
+                // dimensions lues dans l'en-tête: une page portrait n'est pas décodée
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                if (w < minAspect * h) return new Detection(w, h, -1);
+                int orientation = "jpeg".equalsIgnoreCase(reader.getFormatName()) ? exifOrientation(file) : 1;
+                if (orientation > 1) {
+                    log.info("Double page ignorée pour {}: orientation EXIF {}", file.getFileName(), orientation);
+                    return new Detection(w, h, -1);
+                }
+
+                int step = Math.max(1, w / PROFILE_WIDTH);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage small = reader.read(0, param);
+
+                int gutter = gutterColumn(columnProfile(small));
+                return new Detection(w, h, gutter < 0 ? -1 : Math.min(w - 1, gutter * step + step / 2));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            // image que ImageIO ne sait pas décoder (ex: JPEG CMYK): on la garde entière
+            log.warn("Détection double page impossible pour {}: {}", file.getFileName(), e.getMessage());
+            return new Detection(0, 0, -1);
+        }
+    }
+
+    /** Luminosité moyenne (0..255) de chaque colonne, sur la bande 10%-90% de la hauteur (hors bords du scan). */
+    static double[] columnProfile(BufferedImage img) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int y0 = h / 10;
+        int y1 = Math.max(y0 + 1, h - h / 10);
+        double[] profile = new double[w];
+        int[] row = new int[w];
+        for (int y = y0; y < y1; y++) {
+            img.getRGB(0, y, w, 1, row, 0, w);
+            for (int x = 0; x < w; x++) {
+                int rgb = row[x];
+                profile[x] += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+            }
+        }
+        for (int x = 0; x < w; x++) profile[x] /= (y1 - y0);
+        return smooth(profile, Math.max(1, w / 200));
+    }
+
+    /**
+     * Colonne de la reliure dans le profil, ou -1: minimum de la zone centrale, assez sombre par rapport
+     * à la médiane des colonnes, et vallée étroite (pas une illustration ou un bloc de texte centré).
+     */
+    int gutterColumn(double[] profile) {
+        int w = profile.length;
+        int from = (int) (w * (0.5 - searchBand));
+        int to = (int) (w * (0.5 + searchBand));
+        if (w < 20 || from < 1 || to >= w - 1) return -1;
+
+        int min = from;
+        for (int x = from; x <= to; x++) {
+            if (profile[x] < profile[min]) min = x;
+        }
+
+        double[] sorted = profile.clone();
+        Arrays.sort(sorted);
+        double median = sorted[w / 2];
+        if (median <= 0 || (median - profile[min]) / median < minGutterContrast) return -1;
+
+        // largeur de la vallée à mi-profondeur
+        double half = (median + profile[min]) / 2;
+        int l = min;
+        while (l > 0 && profile[l - 1] < half) l--;
+        int r = min;
+        while (r < w - 1 && profile[r + 1] < half) r++;
+        if (r - l + 1 > maxGutterWidth * w) return -1;
+
+        return (l + r) / 2;
+    }
+
+    private static double[] smooth(double[] v, int radius) {
+        double[] out = new double[v.length];
+        double sum = 0;
+        int count = 0;
+        for (int x = 0, lo = 0, hi = 0; x < v.length; x++) {
+            while (hi < v.length && hi <= x + radius) {
+                sum += v[hi++];
+                count++;
+            }
+            while (lo < x - radius) {
+                sum -= v[lo++];
+                count--;
+            }
+            out[x] = sum / count;
+        }
+        return out;
+    }
+
+    /** Décode uniquement la région demandée et la réencode (PNG si lossless, sinon format d'origine). */
+    private byte[] crop(Path file, Rectangle region) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = reader(in);
+            if (reader == null) throw new IOException("Format d'image non supporté: " + file.getFileName());
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                return encode(reader.read(0, param), lossless ? "png" : reader.getFormatName());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private byte[] encode(BufferedImage img, String format) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) throw new IOException("Aucun encodeur pour " + format);
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && "jpeg".equalsIgnoreCase(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Orientation EXIF (tag 0x0112) d'un JPEG: 1 = normale, 2-8 = miroir / rotation à appliquer à l'affichage.
+     * 1 si absente ou illisible. Seuls les segments d'en-tête sont lus, jusqu'au début des données (SOS).
+     */
+    static int exifOrientation(Path file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readUnsignedShort() != 0xFFD8) return 1;
+            while (true) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) return 1;
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) return 1;
+                if (marker != 0xFFE1) {
+                    in.skipNBytes(length);
+                    continue;
+                }
+                byte[] app1 = in.readNBytes(length);
+                int o = tiffOrientation(app1);
+                if (o > 0) return o;
+            }
+        } catch (EOFException e) {
+            return 1;
+        } catch (IOException e) {
+            log.debug("EXIF illisible pour {}: {}", file.getFileName(), e.getMessage());
+            return 1;
+        }
+    }
+
+    /** Orientation lue dans un segment APP1 "Exif\0\0" + TIFF, ou 0 si ce n'est pas un segment EXIF. */
+    private static int tiffOrientation(byte[] app1) {
+        if (app1.length < 14 || app1[0] != 'E' || app1[1] != 'x' || app1[2] != 'i' || app1[3] != 'f') return 0;
+        ByteBuffer tiff = ByteBuffer.wrap(app1, 6, app1.length - 6).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') tiff.order(ByteOrder.LITTLE_ENDIAN);
+        else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') return 0;
+        try {
+            int ifd = tiff.getInt(4);
+            int count = Short.toUnsignedInt(tiff.getShort(ifd));
+            for (int i = 0; i < count; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (Short.toUnsignedInt(tiff.getShort(entry)) == 0x0112) {
+                    int value = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                    return value >= 1 && value <= 8 ? value : 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            return 1;
+        }
+        return 1;
+    }
+
+    private static ImageReader reader(ImageInputStream in) {
+        if (in == null) return null;
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) return null;
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    private static String ext(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(dot) : "";
+    }
+}
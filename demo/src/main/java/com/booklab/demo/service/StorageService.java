@@ -1,5 +1,6 @@
 package com.booklab.demo.service;
 
+import com.booklab.demo.domain.Page;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
@@ -7,16 +8,23 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.util.Comparator;
+import java.util.stream.Stream;
 
 @Service
 public class StorageService {
 
     private final Path root;
+    private final BlobStore blobs;
+    private final PackStore packs;
 
-    public StorageService(@Value("${app.storage.root:data}") String rootDir) {
+    public StorageService(@Value("${app.storage.root:data}") String rootDir, BlobStore blobs, PackStore packs) {
         this.root = Paths.get(rootDir).toAbsolutePath().normalize();
+        this.blobs = blobs;
+        this.packs = packs;
         try {
             Files.createDirectories(this.root);
         } catch (IOException e) {
@@ -24,19 +32,21 @@ public class StorageService {
         }
     }
 
-    public String savePageImage(Long docId, int pageNumber, MultipartFile file) throws IOException {
-        String folder = "doc-" + docId;
-        Path dir = root.resolve(folder);
-        Files.createDirectories(dir);
-
-        String filename = "page-" + pageNumber + getSafeExt(file.getOriginalFilename());
-        Path dest = dir.resolve(filename);
-
+    /**
+     * Dépose l'image d'une page dans le BlobStore (dédupliquée par contenu).
+     * Le chemin renvoyé est relatif à la racine et reste servi par /storage/**.
+     */
+    public BlobStore.BlobRef savePageImage(MultipartFile file) throws IOException {
         try (var in = file.getInputStream()) {
-            Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
+            return blobs.put(in, getSafeExt(file.getOriginalFilename()));
         }
+    }
 
-        return folder + "/" + filename;
+    /** Variante fichier local (ingestion en masse). */
+    public BlobStore.BlobRef savePageImage(Path file) throws IOException {
+        try (var in = Files.newInputStream(file)) {
+            return blobs.put(in, getSafeExt(file.getFileName().toString()));
+        }
     }
 
     public String saveDocumentPdf(Long docId, byte[] pdfBytes) throws IOException {
@@ -47,6 +57,7 @@ public class StorageService {
         String filename = "export.pdf";
         Path dest = dir.resolve(filename);
         Files.write(dest, pdfBytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        packs.markLoose(docId);
 
         return folder + "/" + filename;
     }
@@ -55,13 +66,62 @@ public class StorageService {
         return root.resolve(relativePath).normalize();
     }
 
+    /**
+     * Contenu de l'image d'une page, mappé en mémoire (pas de copie dans le heap):
+     * archive du document si elle y est, sinon blob (via son hash), sinon ancien chemin doc-N/page-K.
+     */
+    public ByteBuffer readPageImage(Page page) throws IOException {
+        ByteBuffer packed = packs.readPageImage(page);
+        if (packed != null) return packed;
+
+        Path file = page.getImageHash() != null ? blobs.resolve(page.getImageHash()) : null;
+        if (file == null || !Files.exists(file)) file = resolvePath(page.getImagePath());
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    /**
+     * Image d'origine d'une page, mappée en mémoire: la double page déposée dont elle est une moitié
+     * (blob gardé par Page.sourceHash), sinon sa propre image.
+     */
+    public ByteBuffer readSourceImage(Page page) throws IOException {
+        if (page.getSourceHash() == null) return readPageImage(page);
+        Path file = blobs.resolve(page.getSourceHash());
+        if (file == null) throw new NoSuchFileException("blob " + page.getSourceHash());
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    /** Fichier du stockage (ex: PDF d'un document) mappé en mémoire: fichier libre, sinon entrée d'archive, sinon null. */
+    public ByteBuffer readFile(String relativePath) throws IOException {
+        Path file = resolvePath(relativePath);
+        if (!Files.exists(file)) return packs.read(relativePath);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    /** Supprime le dossier doc-N (PDF, anciennes images). Les blobs sont libérés séparément. */
+    public void deleteDocumentFiles(Long docId) throws IOException {
+        packs.evict(docId);
+        Path dir = root.resolve("doc-" + docId);
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
     public Resource loadAsResource(String relativePath) {
         try {
             Path file = resolvePath(relativePath);
-            if (!Files.exists(file)) return null;
+            if (!Files.exists(file)) return packs.resource(relativePath);
             UrlResource res = new UrlResource(file.toUri());
             return res.exists() ? res : null;
-        } catch (MalformedURLException e) {
+        } catch (IOException e) {
             return null;
         }
     }
@@ -0,0 +1,215 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.PageInputType;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export ZIP de plusieurs documents, écrit au fil de l'eau dans le flux de sortie (rien n'est préparé
+ * sur disque ni en mémoire): par document, son PDF, un fichier texte UTF-8 par page, et en option
+ * les images d'origine (originals/): l'image déposée pour une page simple, et une seule fois la double page
+ * entière pour les deux moitiés qu'on en a coupées (originals/page-003-004.jpg).
+ *
+ * PDF et images (déjà compressés) sont stockés tels quels (STORED): leur CRC est calculé sur le mapping
+ * mémoire avant l'entrée, puis le contenu est recopié par blocs. Seuls les textes sont compressés.
+ * La mémoire utilisée ne dépend que d'un document (ses pages), pas de la taille de l'archive.
+ */
+@Service
+public class ZipExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ZipExportService.class);
+
+    private static final int CHUNK = 64 * 1024;
+
+    private final DocumentRepository documentRepo;
+    private final PageRepository pageRepo;
+    private final StorageService storage;
+    private final BlobStore blobs;
+
+    public ZipExportService(DocumentRepository documentRepo, PageRepository pageRepo, StorageService storage,
+                            BlobStore blobs) {
+        this.documentRepo = documentRepo;
+        this.pageRepo = pageRepo;
+        this.storage = storage;
+        this.blobs = blobs;
+    }
+
+    /** Ids existants parmi ceux demandés, dans l'ordre et sans doublon. */
+    public List<Long> existing(Collection<Long> ids) {
+        List<Long> found = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id != null && documentRepo.existsById(id)) found.add(id);
+        }
+        return found;
+    }
+
+    /**
+     * Écrit l'archive dans out (non fermé: seul le ZIP est terminé).
+     * Un fichier manquant est sauté; une erreur d'écriture (client parti) interrompt l'export.
+     */
+    public void export(List<Long> documentIds, boolean images, OutputStream out) throws IOException {
+        long t0 = System.nanoTime();
+        int entries = 0;
+        byte[] chunk = new byte[CHUNK];
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+
+        for (Long id : documentIds) {
+            Document doc = documentRepo.findById(id).orElse(null);
+            if (doc == null) continue;
+            String dir = folder(doc);
+
+            if (doc.getPdfPath() != null && !doc.getPdfPath().isBlank()) {
+                ByteBuffer pdf = read(() -> storage.readFile(doc.getPdfPath()), doc.getPdfPath());
+                if (pdf != null) {
+                    stored(zip, dir + "document.pdf", pdf, chunk);
+                    entries++;
+                }
+            }
+
+            List<Page> pages = pageRepo.findByDocumentIdOrderByPageNumberAsc(id);
+            // double page coupée: pages couvertes par son original (exporté une fois, avec la première moitié)
+            Map<String, List<Integer>> spreads = new HashMap<>();
+            for (Page p : pages) {
+                if (p.getSourceHash() != null) {
+                    spreads.computeIfAbsent(p.getSourceHash(), h -> new ArrayList<>()).add(p.getPageNumber());
+                }
+            }
+
+            for (Page p : pages) {
+                String base = String.format("page-%03d", p.getPageNumber());
+
+                String text = pageText(p);
+                if (text != null) {
+                    deflated(zip, dir + "textes/" + base + ".txt", text.getBytes(StandardCharsets.UTF_8));
+                    entries++;
+                }
+
+                if (images && p.getInputType() == PageInputType.IMAGE && p.getImagePath() != null) {
+                    String name = originalName(p, base, spreads);
+                    if (name != null) {
+                        ByteBuffer img = read(() -> storage.readSourceImage(p), name);
+                        if (img != null) {
+                            stored(zip, dir + "originals/" + name, img, chunk);
+                            entries++;
+                        }
+                    }
+                }
+            }
+            // les entrées d'un document partent avant de passer au suivant
+            zip.flush();
+        }
+
+        zip.finish();
+        log.info("Export ZIP: {} documents, {} entrées en {} ms",
+                documentIds.size(), entries, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /** Nom de l'image d'origine d'une page, ou null si elle part avec une autre page (seconde moitié). */
+    private String originalName(Page p, String base, Map<String, List<Integer>> spreads) {
+        String source = p.getSourceHash();
+        if (source == null) return base + ext(p.getImagePath());
+        List<Integer> covered = spreads.get(source);
+        if (!covered.get(0).equals(p.getPageNumber())) return null;
+        Path file = blobs.resolve(source);
+        String name = covered.size() > 1
+                ? String.format("page-%03d-%03d", covered.get(0), covered.get(covered.size() - 1))
+                : base;
+        return name + ext(file != null ? file.getFileName().toString() : p.getImagePath());
+    }
+
+    private interface Reader {
+        ByteBuffer read() throws IOException;
+    }
+
+    private static ByteBuffer read(Reader reader, String path) {
+        try {
+            return reader.read();
+        } catch (IOException e) {
+            log.warn("Export ZIP: {} ignoré ({})", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Entrée non compressée: taille et CRC connus d'avance, contenu recopié par blocs. */
+    private static void stored(ZipOutputStream zip, String name, ByteBuffer content, byte[] chunk) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content.duplicate());
+
+        ZipEntry e = new ZipEntry(name);
+        e.setMethod(ZipEntry.STORED);
+        e.setSize(content.remaining());
+        e.setCompressedSize(content.remaining());
+        e.setCrc(crc.getValue());
+        zip.putNextEntry(e);
+
+        ByteBuffer b = content.duplicate();
+        while (b.hasRemaining()) {
+            int n = Math.min(chunk.length, b.remaining());
+            b.get(chunk, 0, n);
+            zip.write(chunk, 0, n);
+        }
+        zip.closeEntry();
+    }
+
+    private static void deflated(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        ZipEntry e = new ZipEntry(name);
+        e.setMethod(ZipEntry.DEFLATED);
+        zip.putNextEntry(e);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    /** Textes d'une page (hébreu, hébreu avec niqqud, français), ou null si elle n'en a aucun. */
+    static String pageText(Page p) {
+        String hebrew = notBlank(p.getHebrewPlain()) ? p.getHebrewPlain() : p.getHebrewInputText();
+        StringBuilder sb = new StringBuilder();
+        section(sb, "Hébreu", hebrew);
+        section(sb, "Hébreu (niqqud)", p.getHebrewNikud());
+        section(sb, "Français", p.getFrText());
+        return sb.isEmpty() ? null : sb.toString();
+    }
+
+    private static void section(StringBuilder sb, String title, String text) {
+        if (!notBlank(text)) return;
+        if (!sb.isEmpty()) sb.append('\n');
+        sb.append("== ").append(title).append(" ==\n").append(text.strip()).append('\n');
+    }
+
+    private static boolean notBlank(String s) {
+        return s != null && !s.isBlank();
+    }
+
+    /** Dossier du document dans l'archive: "doc-12-titre-du-document/". */
+    static String folder(Document doc) {
+        String slug = doc.getTitle() == null ? "" : doc.getTitle().strip()
+                .replaceAll("[^\\p{L}\\p{N}]+", "-")
+                .replaceAll("^-|-$", "");
+        if (slug.length() > 60) slug = slug.substring(0, 60);
+        return "doc-" + doc.getId() + (slug.isEmpty() ? "" : "-" + slug) + "/";
+    }
+
+    private static String ext(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(dot) : ".bin";
+    }
+}
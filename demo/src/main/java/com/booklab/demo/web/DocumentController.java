@@ -3,9 +3,19 @@ package com.booklab.demo.web;
 import com.booklab.demo.domain.*;
 import com.booklab.demo.repo.DocumentRepository;
 import com.booklab.demo.repo.PageRepository;
+import com.booklab.demo.repo.PageStats;
+import com.booklab.demo.service.BlobStore;
+import com.booklab.demo.service.DocumentListing;
+import com.booklab.demo.service.PageScheduler;
 import com.booklab.demo.service.PdfExportService;
+import com.booklab.demo.service.PipelineMetrics;
 import com.booklab.demo.service.ProcessingService;
+import com.booklab.demo.service.SpreadSplitter;
 import com.booklab.demo.service.StorageService;
+import com.booklab.demo.service.ZipExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Controller;
@@ -15,9 +25,13 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
 
 @Controller
+@ConditionalOnWebApplication
 public class DocumentController {
 
     private final DocumentRepository documentRepo;
@@ -25,24 +39,43 @@ public class DocumentController {
     private final StorageService storage;
     private final ProcessingService processing;
     private final PdfExportService pdfExport;
+    private final PipelineMetrics metrics;
+    private final DocumentListing listingService;
+    private final SpreadSplitter spreads;
+    private final ZipExportService zipExport;
 
     public DocumentController(DocumentRepository documentRepo,
                               PageRepository pageRepo,
                               StorageService storage,
                               ProcessingService processing,
-                              PdfExportService pdfExport) {
+                              @Lazy PdfExportService pdfExport,
+                              PipelineMetrics metrics,
+                              DocumentListing listingService,
+                              SpreadSplitter spreads,
+                              ZipExportService zipExport) {
         this.documentRepo = documentRepo;
         this.pageRepo = pageRepo;
         this.storage = storage;
         this.processing = processing;
         this.pdfExport = pdfExport;
+        this.metrics = metrics;
+        this.listingService = listingService;
+        this.spreads = spreads;
+        this.zipExport = zipExport;
     }
 
     @GetMapping("/")
     public String home(Model model,
+                       @RequestParam(required = false) Instant beforeTs,
+                       @RequestParam(required = false) Long beforeId,
                        @ModelAttribute("msg") String msg,
                        @ModelAttribute("err") String err) {
-        model.addAttribute("docs", documentRepo.findAllByOrderByCreatedAtDesc());
+        DocumentListing.Cursor cursor = (beforeTs != null && beforeId != null)
+                ? new DocumentListing.Cursor(beforeTs, beforeId) : null;
+        DocumentListing.ListingPage listing = listingService.page(cursor);
+        model.addAttribute("docs", listing.documents());
+        model.addAttribute("listing", listing);
+        model.addAttribute("firstPage", cursor == null);
         model.addAttribute("msg", (msg != null && !msg.isBlank()) ? msg : null);
         model.addAttribute("err", (err != null && !err.isBlank()) ? err : null);
         return "home";
@@ -68,17 +101,23 @@ public class DocumentController {
 
             int pageNumber = 1;
             for (MultipartFile f : sorted) {
-                String rel = storage.savePageImage(doc.getId(), pageNumber, f);
+                BlobStore.BlobRef blob = metrics.time(PipelineMetrics.UPLOAD, () -> storage.savePageImage(f));
 
-                Page p = new Page();
-                p.setDocument(doc);
-                p.setPageNumber(pageNumber);
-                p.setInputType(PageInputType.IMAGE);
-                p.setStatus(PageStatus.PENDING);
-                p.setImagePath(rel);
-                pageRepo.save(p);
+                // une double page donne deux pages (droite puis gauche), qui gardent l'original
+                List<BlobStore.BlobRef> parts = spreads.split(blob);
+                for (BlobStore.BlobRef part : parts) {
+                    Page p = new Page();
+                    p.setDocument(doc);
+                    p.setPageNumber(pageNumber);
+                    p.setInputType(PageInputType.IMAGE);
+                    p.setStatus(PageStatus.PENDING);
+                    p.setImagePath(part.path());
+                    p.setImageHash(part.hash());
+                    if (parts.size() > 1) p.setSourceHash(blob.hash());
+                    pageRepo.save(p);
 
-                pageNumber++;
+                    pageNumber++;
+                }
             }
 
             ra.addFlashAttribute("msg", "Document créé (#" + doc.getId() + ")");
@@ -98,16 +137,13 @@ public class DocumentController {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Document introuvable"));
 
         List<Page> pages = pageRepo.findByDocumentIdOrderByPageNumberAsc(id);
-
-        long total = pages.size();
-        long done = pages.stream().filter(p -> p.getStatus() == PageStatus.DONE).count();
-        long failed = pages.stream().filter(p -> p.getStatus() == PageStatus.FAILED).count();
+        PageStats stats = listingService.stats(id);
 
         model.addAttribute("doc", doc);
         model.addAttribute("pages", pages);
-        model.addAttribute("total", total);
-        model.addAttribute("done", done);
-        model.addAttribute("failed", failed);
+        model.addAttribute("totalPages", stats.total());
+        model.addAttribute("donePages", stats.done());
+        model.addAttribute("failedPages", stats.failed());
         model.addAttribute("pdfReady", doc.getPdfPath() != null && !doc.getPdfPath().isBlank());
         model.addAttribute("msg", (msg != null && !msg.isBlank()) ? msg : null);
         model.addAttribute("err", (err != null && !err.isBlank()) ? err : null);
@@ -116,12 +152,42 @@ public class DocumentController {
     }
 
     @PostMapping("/documents/{id}/process")
-    public String startProcessing(@PathVariable Long id, RedirectAttributes ra) {
-        processing.processDocument(id);
-        ra.addFlashAttribute("msg", "Traitement OPEN AI lancé (asynchrone). Rafraîchis la page.");
+    public String startProcessing(@PathVariable Long id,
+                                  @RequestParam(defaultValue = "" + PageScheduler.DEFAULT_PRIORITY) int priority,
+                                  @RequestParam(required = false) Integer maxParallel,
+                                  RedirectAttributes ra) {
+        if (processing.processDocument(id, priority, maxParallel)) {
+            ra.addFlashAttribute("msg", "Traitement OPEN AI lancé (asynchrone). Rafraîchis la page.");
+        } else {
+            ra.addFlashAttribute("err", "Traitement déjà en cours pour ce document.");
+        }
+        return "redirect:/documents/" + id;
+    }
+
+    @PostMapping("/documents/{id}/cancel")
+    public String cancelProcessing(@PathVariable Long id, RedirectAttributes ra) {
+        if (processing.cancelProcessing(id)) {
+            ra.addFlashAttribute("msg", "Traitement annulé. Les pages non traitées repassent en PENDING.");
+        } else {
+            ra.addFlashAttribute("err", "Aucun traitement en cours pour ce document.");
+        }
         return "redirect:/documents/" + id;
     }
 
+    @PostMapping("/documents/{id}/delete")
+    public String deleteDocument(@PathVariable Long id, RedirectAttributes ra) {
+        try {
+            if (!processing.deleteDocument(id)) {
+                ra.addFlashAttribute("err", "Document en cours de traitement: annule-le avant de le supprimer.");
+                return "redirect:/documents/" + id;
+            }
+            ra.addFlashAttribute("msg", "Document #" + id + " supprimé.");
+        } catch (Exception e) {
+            ra.addFlashAttribute("err", "Suppression échouée: " + e.getMessage());
+        }
+        return "redirect:/";
+    }
+
     @PostMapping("/documents/{id}/add-text")
     public String addTextPage(@PathVariable Long id,
                               @RequestParam("hebrewInputText") String hebrewInputText,
@@ -177,4 +243,21 @@ public class DocumentController {
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"document-" + id + ".pdf\"")
                 .body(res);
     }
+
+    /** Export groupé des documents cochés: ZIP écrit directement dans la réponse, au fil de l'eau. */
+    @GetMapping("/documents/export.zip")
+    public void exportZip(@RequestParam(required = false) List<Long> ids,
+                          @RequestParam(defaultValue = "false") boolean images,
+                          HttpServletResponse response) throws IOException {
+        if (ids == null || ids.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Aucun document sélectionné");
+        }
+        List<Long> found = zipExport.existing(ids);
+        if (found.isEmpty()) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Documents introuvables");
+
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"booklab-export-" + LocalDate.now() + ".zip\"");
+        zipExport.export(found, images, response.getOutputStream());
+    }
 }
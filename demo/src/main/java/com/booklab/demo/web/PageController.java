@@ -4,6 +4,7 @@ import com.booklab.demo.domain.Page;
 import com.booklab.demo.domain.PageInputType;
 import com.booklab.demo.domain.PageStatus;
 import com.booklab.demo.repo.PageRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -12,6 +13,7 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Controller
+@ConditionalOnWebApplication
 public class PageController {
 
     private final PageRepository pageRepo;
@@ -0,0 +1,25 @@
+package com.booklab.demo.web;
+
+import com.booklab.demo.service.OpenAiCircuitBreaker;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ModelAttribute;
+
+/**
+ * État du disjoncteur OpenAI disponible dans toutes les vues (bandeau "file en pause").
+ */
+@ControllerAdvice
+@ConditionalOnWebApplication
+public class StatusModelAdvice {
+
+    private final OpenAiCircuitBreaker breaker;
+
+    public StatusModelAdvice(OpenAiCircuitBreaker breaker) {
+        this.breaker = breaker;
+    }
+
+    @ModelAttribute("openaiStatus")
+    public OpenAiCircuitBreaker.Status openaiStatus() {
+        return breaker.status();
+    }
+}
@@ -0,0 +1,28 @@
+-- Schéma d'origine, tel que produit par ddl-auto: update avant le stockage par contenu (V2).
+-- Les bases existantes sont "baselinées" en version 1 (spring.flyway.baseline-on-migrate) et ne rejouent pas ce script.
+
+create table documents (
+    id          bigint generated by default as identity,
+    title       varchar(255) not null,
+    status      enum ('DONE','DONE_WITH_ERRORS','PROCESSING','UPLOADED') not null,
+    created_at  timestamp(6) with time zone not null,
+    updated_at  timestamp(6) with time zone not null,
+    pdf_path    varchar(255),
+    primary key (id)
+);
+
+create table pages (
+    id                bigint generated by default as identity,
+    document_id       bigint not null,
+    page_number       integer not null,
+    input_type        enum ('IMAGE','TEXT') not null,
+    status            enum ('DONE','FAILED','PENDING','PROCESSING') not null,
+    image_path        varchar(255),
+    hebrew_input_text clob,
+    hebrew_plain      clob,
+    hebrew_nikud      clob,
+    fr_text           clob,
+    error             varchar(4000),
+    primary key (id),
+    constraint fk_pages_document foreign key (document_id) references documents
+);
@@ -0,0 +1,14 @@
+-- Stockage des images par contenu (BlobStore): hash des pages et table des blobs avec compteur de références.
+-- Idempotent: une base passée par ddl-auto: update après l'arrivée du BlobStore a déjà ces objets.
+
+alter table pages add column if not exists image_hash varchar(64);
+create index if not exists idx_pages_image_hash on pages (image_hash);
+
+create table if not exists blobs (
+    hash        varchar(64) not null,
+    path        varchar(255) not null,
+    size        bigint not null,
+    ref_count   integer not null,
+    created_at  timestamp(6) with time zone not null,
+    primary key (hash)
+);
@@ -0,0 +1,5 @@
+-- Liste des documents (pagination par clé sur created_at, id) et agrégats de pages par document.
+
+create index if not exists idx_documents_created_at on documents (created_at desc, id desc);
+create index if not exists idx_pages_document_page on pages (document_id, page_number);
+create index if not exists idx_pages_document_status on pages (document_id, status);
@@ -0,0 +1,4 @@
+-- Dossier source d'un document créé par l'ingestion en masse (reprise après redémarrage).
+
+alter table documents add column source_path varchar(1024);
+create unique index ux_documents_source_path on documents (source_path);
@@ -0,0 +1,3 @@
+-- Fichier image d'origine d'une page importée par l'ingestion en masse (reprise par nom, pas par numéro de page).
+
+alter table pages add column source_name varchar(255);
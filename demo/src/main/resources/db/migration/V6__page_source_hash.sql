@@ -0,0 +1,3 @@
+-- Double page d'origine (hash BlobStore) dont une page est une moitié: l'original est conservé pour l'export.
+
+alter table pages add column source_hash varchar(64);
@@ -1,13 +1,28 @@
 package com.booklab.demo;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @SpringBootTest
 class DemoApplicationTests {
 
+	@Autowired
+	Environment env;
+
 	@Test
 	void contextLoads() {
 	}
 
+	/** Les surcharges de test (application.properties) complètent application.yml, elles ne le masquent pas. */
+	@Test
+	void testOverridesKeepMainConfiguration() {
+		assertEquals("jdbc:h2:mem:booklab-test;DB_CLOSE_DELAY=-1", env.getProperty("spring.datasource.url"));
+		assertEquals("health,info,metrics,prometheus", env.getProperty("management.endpoints.web.exposure.include"));
+		assertEquals("booklab", env.getProperty("management.metrics.tags.application"));
+	}
+
 }
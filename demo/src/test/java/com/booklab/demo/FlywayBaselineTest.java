@@ -0,0 +1,99 @@
+package com.booklab.demo;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mise à jour d'une base existante créée par ddl-auto: update avant Flyway: elle est baselinée en version 1,
+ * toutes les migrations suivantes doivent s'appliquer et le schéma passer la validation Hibernate.
+ */
+@SpringBootTest
+class FlywayBaselineTest {
+
+    private static final String URL = "jdbc:h2:mem:booklab-baseline;DB_CLOSE_DELAY=-1";
+
+    /** Schéma d'avant la série (ni blobs, ni hash d'image, ni dossier source), avec des données. */
+    private static final String BASELINE = """
+            create table documents (
+                id bigint generated by default as identity,
+                title varchar(255) not null,
+                status enum ('DONE','DONE_WITH_ERRORS','PROCESSING','UPLOADED') not null,
+                created_at timestamp(6) with time zone not null,
+                updated_at timestamp(6) with time zone not null,
+                pdf_path varchar(255),
+                primary key (id));
+            create table pages (
+                id bigint generated by default as identity,
+                document_id bigint not null,
+                page_number integer not null,
+                input_type enum ('IMAGE','TEXT') not null,
+                status enum ('DONE','FAILED','PENDING','PROCESSING') not null,
+                image_path varchar(255),
+                hebrew_input_text clob,
+                hebrew_plain clob,
+                hebrew_nikud clob,
+                fr_text clob,
+                error varchar(4000),
+                primary key (id),
+                constraint fk_pages_document foreign key (document_id) references documents);
+            insert into documents (title, status, created_at, updated_at) values ('ancien livre', 'DONE', current_timestamp, current_timestamp);
+            insert into pages (document_id, page_number, input_type, status, image_path)
+                select id, 1, 'IMAGE', 'DONE', 'doc-' || id || '/page-1.jpg' from documents;
+            """;
+
+    @DynamicPropertySource
+    static void baselineDatabase(DynamicPropertyRegistry registry) throws SQLException {
+        try (Connection c = DriverManager.getConnection(URL, "sa", "");
+             Statement st = c.createStatement()) {
+            st.execute("drop all objects");
+            st.execute(BASELINE);
+        }
+        registry.add("spring.datasource.url", () -> URL);
+    }
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    Flyway flyway;
+
+    @Test
+    void existingDatabaseIsBaselinedThenMigrated() {
+        List<String> applied = Arrays.stream(flyway.info().applied())
+                .map(i -> i.getVersion().getVersion() + ":" + i.getType().name() + ":" + i.getState().isApplied())
+                .toList();
+        assertEquals("1:BASELINE:true", applied.get(0));
+        // V1 baselinée, puis toutes les migrations à partir de V2, dans l'ordre et sans échec
+        List<String> later = applied.subList(1, applied.size());
+        assertEquals(List.of("2:SQL:true", "3:SQL:true", "4:SQL:true"), later.subList(0, 3));
+        assertTrue(Arrays.stream(flyway.info().applied()).noneMatch(i -> i.getState().isFailed()));
+        assertEquals(0, flyway.info().pending().length);
+        MigrationInfo[] all = flyway.info().all();
+        assertEquals(all[all.length - 1].getVersion(), flyway.info().current().getVersion());
+
+        // objets ajoutés par la série, données d'origine intactes
+        assertEquals(0, jdbc.queryForObject("select count(*) from blobs", Integer.class));
+        assertEquals(1, jdbc.queryForObject("select count(*) from pages where image_path like 'doc-%/page-1.jpg'", Integer.class));
+        assertNull(jdbc.queryForObject("select image_hash from pages", String.class));
+        assertNull(jdbc.queryForObject("select source_path from documents", String.class));
+        assertNull(jdbc.queryForObject("select source_name from pages", String.class));
+        assertNull(jdbc.queryForObject("select source_hash from pages", String.class));
+    }
+}
@@ -0,0 +1,41 @@
+package com.booklab.demo;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/** Scans synthétiques pour les tests d'import (contenu unique par appel via le bruit). */
+public final class TestImages {
+
+    private TestImages() {
+    }
+
+    /** Page claire bruitée, avec une reliure sombre et étroite au milieu pour une double page. */
+    public static BufferedImage scan(int width, int height, boolean spread, Random rnd) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = 200 + rnd.nextInt(56);
+                img.setRGB(x, y, (v << 16) | (v << 8) | v);
+            }
+        }
+        if (spread) {
+            for (int y = 0; y < height; y++) {
+                for (int x = width / 2 - 8; x < width / 2 + 8; x++) img.setRGB(x, y, 0x202020);
+            }
+        }
+        return img;
+    }
+
+    public static byte[] jpeg(BufferedImage img) throws IOException {
+        return encode(img, "jpg");
+    }
+
+    public static byte[] encode(BufferedImage img, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(img, format, out)) throw new IOException("Aucun encodeur pour " + format);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,132 @@
+package com.booklab.demo.cli;
+
+import com.booklab.demo.TestImages;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import com.booklab.demo.service.BlobStore;
+import com.booklab.demo.service.PdfExportService;
+import com.booklab.demo.service.PipelineMetrics;
+import com.booklab.demo.service.ProcessingService;
+import com.booklab.demo.service.SpreadSplitter;
+import com.booklab.demo.service.StorageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/** Import d'un dossier et reprise; le runner est construit à la main (le profil "ingest" n'est pas actif). */
+@SpringBootTest
+class BulkIngestRunnerTest {
+
+    @Autowired
+    DocumentRepository documentRepo;
+
+    @Autowired
+    PageRepository pageRepo;
+
+    @Autowired
+    StorageService storage;
+
+    @Autowired
+    ProcessingService processing;
+
+    @Autowired
+    PdfExportService pdfExport;
+
+    @Autowired
+    SpreadSplitter spreads;
+
+    @Autowired
+    BlobStore blobs;
+
+    @Autowired
+    PipelineMetrics metrics;
+
+    @TempDir
+    Path input;
+
+    private BulkIngestRunner runner(SpreadSplitter splitter, String root) {
+        return new BulkIngestRunner(documentRepo, pageRepo, storage, processing, pdfExport, splitter, root, 1, 1);
+    }
+
+    private BulkIngestRunner.SourceDir source(BulkIngestRunner runner) {
+        List<BulkIngestRunner.SourceDir> found = runner.scan(input);
+        assertEquals(1, found.size());
+        return found.get(0);
+    }
+
+    private void image(String name, boolean spread, Random rnd) throws Exception {
+        Files.write(input.resolve(name), TestImages.jpeg(spread
+                ? TestImages.scan(1600, 1000, true, rnd)
+                : TestImages.scan(800, 1100, false, rnd)));
+    }
+
+    private List<String> layout(Long docId) {
+        return pageRepo.findByDocumentIdOrderByPageNumberAsc(docId).stream()
+                .map(p -> p.getPageNumber() + ":" + p.getSourceName())
+                .toList();
+    }
+
+    @Test
+    void importNumbersPagesAndSplitsSpreads() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        image("001.jpg", false, rnd);
+        image("002.jpg", true, rnd);
+        image("003.jpg", false, rnd);
+        Files.writeString(input.resolve("notes.txt"), "ignoré");
+
+        BulkIngestRunner runner = runner(spreads, input.toString());
+        Long docId = runner.importDocument(source(runner));
+
+        assertNotNull(docId);
+        assertEquals(input.getFileName().toString(), documentRepo.findById(docId).orElseThrow().getSourcePath());
+        assertEquals(List.of("1:001.jpg", "2:002.jpg", "3:002.jpg", "4:003.jpg"), layout(docId));
+    }
+
+    @Test
+    void resumeSkipsImportedImagesWhateverTheDetectionSays() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        image("001.jpg", true, rnd);
+        image("002.jpg", false, rnd);
+        BulkIngestRunner runner = runner(spreads, input.toString());
+        Long docId = runner.importDocument(source(runner));
+        assertEquals(List.of("1:001.jpg", "2:001.jpg", "3:002.jpg"), layout(docId));
+
+        // interruption: la dernière image n'avait pas été importée, et une nouvelle est arrivée
+        Page last = pageRepo.findByDocumentIdOrderByPageNumberAsc(docId).get(2);
+        pageRepo.delete(last);
+        blobs.release(last.getImageHash());
+        image("003.jpg", false, rnd);
+
+        // détection des doubles pages désactivée à la reprise: le nombre de pages d'une image déjà importée
+        // ne change plus rien à la numérotation
+        SpreadSplitter noSplit = new SpreadSplitter(blobs, metrics, false, 1.2, 0.2, 0.15, 0.08, false, 0.95f);
+        BulkIngestRunner resumed = runner(noSplit, input.toString());
+        assertEquals(docId, resumed.importDocument(source(resumed)));
+        assertEquals(List.of("1:001.jpg", "2:001.jpg", "3:002.jpg", "4:003.jpg"), layout(docId));
+
+        // reprise sans rien de nouveau: aucune page ajoutée
+        assertEquals(docId, resumed.importDocument(source(resumed)));
+        assertEquals(4, layout(docId).size());
+    }
+
+    @Test
+    void runReturnsAndReportsFailureThroughTheExitCode() {
+        BulkIngestRunner missing = runner(spreads, input.resolve("absent").toString());
+        missing.run();
+        assertEquals(2, missing.getExitCode());
+
+        BulkIngestRunner empty = runner(spreads, "");
+        empty.run();
+        assertEquals(2, empty.getExitCode());
+    }
+}
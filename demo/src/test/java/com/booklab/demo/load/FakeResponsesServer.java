@@ -0,0 +1,163 @@
+package com.booklab.demo.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Faux serveur "Responses API" local (tests uniquement).
+ * Latence, taux d'erreurs 5xx et de 429 configurables; renvoie des pages hébreu/français en conserve
+ * au format attendu par OpenAiResponsesService (output[].content[].output_text + usage).
+ */
+public class FakeResponsesServer implements AutoCloseable {
+
+    /** Distribution de latence simulée, en millisecondes. */
+    public interface Latency {
+        long sampleMillis();
+
+        static Latency none() {
+            return () -> 0;
+        }
+
+        static Latency fixed(long ms) {
+            return () -> ms;
+        }
+
+        static Latency uniform(long minMs, long maxMs) {
+            return () -> ThreadLocalRandom.current().nextLong(minMs, maxMs + 1);
+        }
+
+        /** Log-normale: médiane + sigma -> longue traîne, comme les appels vision réels. */
+        static Latency logNormal(long medianMs, double sigma) {
+            return () -> Math.round(medianMs * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+    }
+
+    public record Config(Latency latency, double errorRate, double rate429) {
+        public static Config fast() {
+            return new Config(Latency.none(), 0, 0);
+        }
+    }
+
+    private static final List<Map<String, String>> CANNED = List.of(
+            Map.of("hebrew_plain", "בראשית ברא אלהים את השמים ואת הארץ",
+                    "hebrew_niqqud", "בְּרֵאשִׁית בָּרָא אֱלֹהִים אֵת הַשָּׁמַיִם וְאֵת הָאָרֶץ",
+                    "french", "Au commencement, Dieu créa le ciel et la terre."),
+            Map.of("hebrew_plain", "והארץ היתה תהו ובהו וחשך על פני תהום\nורוח אלהים מרחפת על פני המים",
+                    "hebrew_niqqud", "וְהָאָרֶץ הָיְתָה תֹהוּ וָבֹהוּ וְחֹשֶׁךְ עַל־פְּנֵי תְהוֹם\nוְרוּחַ אֱלֹהִים מְרַחֶפֶת עַל־פְּנֵי הַמָּיִם",
+                    "french", "Or la terre était informe et vide; des ténèbres couvraient l'abîme,\net le souffle de Dieu planait sur les eaux."),
+            Map.of("hebrew_plain", "ויאמר אלהים יהי אור ויהי אור",
+                    "hebrew_niqqud", "וַיֹּאמֶר אֱלֹהִים יְהִי אוֹר וַיְהִי־אוֹר",
+                    "french", "Dieu dit: \"Que la lumière soit!\" Et la lumière fut.")
+    );
+
+    private final ObjectMapper om = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile Config config;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    public FakeResponsesServer(Config config) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/v1/responses", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/responses";
+    }
+
+    public void setConfig(Config config) {
+        this.config = config;
+    }
+
+    public long requests() { return requests.get(); }
+    public long errors() { return errors.get(); }
+    public long throttled() { return throttled.get(); }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex; InputStream in = ex.getRequestBody()) {
+            in.readAllBytes();
+            requests.incrementAndGet();
+            Config c = config;
+
+            long delay = Math.max(0, c.latency().sampleMillis());
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < c.rate429()) {
+                throttled.incrementAndGet();
+                ex.getResponseHeaders().add("Retry-After", "1");
+                send(ex, 429, error("rate_limit_exceeded", "Rate limit reached (fake)"));
+            } else if (roll < c.rate429() + c.errorRate()) {
+                errors.incrementAndGet();
+                send(ex, 500, error("server_error", "Internal error (fake)"));
+            } else {
+                send(ex, 200, success());
+            }
+        }
+    }
+
+    private String success() throws IOException {
+        Map<String, String> page = CANNED.get(ThreadLocalRandom.current().nextInt(CANNED.size()));
+        String text = om.writeValueAsString(page);
+
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("id", "resp_fake_" + requests.get());
+        root.put("object", "response");
+        root.put("model", "fake-model");
+        root.put("output", List.of(Map.of(
+                "type", "message",
+                "role", "assistant",
+                "content", List.of(Map.of("type", "output_text", "text", text)))));
+        root.put("usage", Map.of(
+                "input_tokens", 1200,
+                "output_tokens", text.length() / 3,
+                "total_tokens", 1200 + text.length() / 3));
+        return om.writeValueAsString(root);
+    }
+
+    private String error(String code, String message) throws IOException {
+        return om.writeValueAsString(Map.of("error", Map.of("type", code, "code", code, "message", message)));
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
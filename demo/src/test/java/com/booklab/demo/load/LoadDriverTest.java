@@ -0,0 +1,212 @@
+package com.booklab.demo.load;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.DocumentStatus;
+import com.booklab.demo.domain.PageStatus;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test de charge de bout en bout contre le faux serveur Responses (aucun coût API).
+ * Désactivé par défaut:
+ *   ./mvnw test -Dtest=LoadDriverTest -Dbooklab.load=true -Dbooklab.load.docs=20 -Dbooklab.load.pages=50
+ * Paramètres: docs, pages, medianMs, sigma, errorRate, rate429, timeoutMin (préfixe booklab.load.).
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "management.metrics.distribution.percentiles[booklab.page.duration]=0.5,0.99")
+@EnabledIfSystemProperty(named = "booklab.load", matches = "true")
+class LoadDriverTest {
+
+    private static FakeResponsesServer fake;
+
+    @DynamicPropertySource
+    static void fakeEndpoint(DynamicPropertyRegistry registry) throws IOException {
+        fake = new FakeResponsesServer(new FakeResponsesServer.Config(
+                FakeResponsesServer.Latency.logNormal(longProp("medianMs", 200), doubleProp("sigma", 0.5)),
+                doubleProp("errorRate", 0.02),
+                doubleProp("rate429", 0.02)));
+        registry.add("app.openai.endpoint", fake::endpoint);
+    }
+
+    @AfterAll
+    static void stopFake() {
+        if (fake != null) fake.close();
+    }
+
+    @Value("${local.server.port}")
+    int port;
+
+    @Autowired
+    DocumentRepository documentRepo;
+
+    @Autowired
+    PageRepository pageRepo;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void uploadProcessAndExport() throws Exception {
+        int docs = (int) longProp("docs", 10);
+        int pagesPerDoc = (int) longProp("pages", 20);
+        Duration timeout = Duration.ofMinutes(longProp("timeoutMin", 30));
+
+        // pas de suivi des redirections: l'id du document est lu dans Location
+        RestClient client = RestClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .requestFactory(new JdkClientHttpRequestFactory(
+                        HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build()))
+                .build();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long t0 = System.nanoTime();
+
+        List<Long> ids = new ArrayList<>();
+        Random rnd = new Random(11);
+        for (int d = 0; d < docs; d++) {
+            ids.add(upload(client, "load-" + d, pagesPerDoc, rnd));
+        }
+        long uploaded = System.nanoTime();
+
+        for (Long id : ids) {
+            client.post().uri("/documents/{id}/process", id).retrieve().toBodilessEntity();
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!allFinished(ids)) {
+            assertTrue(System.nanoTime() < deadline, "Timeout: traitement non terminé");
+            Thread.sleep(250);
+        }
+        long processed = System.nanoTime();
+
+        long pdfBytes = 0;
+        for (Long id : ids) {
+            client.post().uri("/documents/{id}/pdf", id).retrieve().toBodilessEntity();
+            byte[] pdf = client.get().uri("/documents/{id}/pdf", id).retrieve().body(byte[].class);
+            pdfBytes += pdf == null ? 0 : pdf.length;
+        }
+        long exported = System.nanoTime();
+
+        long totalPages = (long) docs * pagesPerDoc;
+        long done = ids.stream()
+                .mapToLong(id -> pageRepo.findByDocumentIdOrderByPageNumberAsc(id).stream()
+                        .filter(p -> p.getStatus() == PageStatus.DONE).count())
+                .sum();
+        double minutes = (processed - uploaded) / 60e9;
+        long heapPeak = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+
+        System.out.printf("""
+                === BookLab load report ===
+                documents        : %d x %d pages (%d pages)
+                upload           : %d ms
+                processing       : %d ms
+                export + download: %d ms (%d KB)
+                pages DONE       : %d / %d
+                pages/minute     : %.1f
+                page latency p50 : %s
+                page latency p99 : %s
+                fake API         : %d requests, %d errors, %d throttled (429)
+                heap high-water  : %d MB
+                """,
+                docs, pagesPerDoc, totalPages,
+                TimeUnit.NANOSECONDS.toMillis(uploaded - t0),
+                TimeUnit.NANOSECONDS.toMillis(processed - uploaded),
+                TimeUnit.NANOSECONDS.toMillis(exported - processed), pdfBytes / 1024,
+                done, totalPages,
+                done / minutes,
+                percentile(0.5), percentile(0.99),
+                fake.requests(), fake.errors(), fake.throttled(),
+                heapPeak / (1024 * 1024));
+
+        assertEquals(docs, ids.size());
+    }
+
+    private long upload(RestClient client, String title, int pages, Random rnd) {
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("title", title);
+        for (int i = 1; i <= pages; i++) {
+            byte[] scan = new byte[200_000];
+            rnd.nextBytes(scan);
+            String name = "page-%04d.jpg".formatted(i);
+            form.add("files", new ByteArrayResource(scan) {
+                @Override
+                public String getFilename() {
+                    return name;
+                }
+            });
+        }
+
+        ResponseEntity<Void> resp = client.post().uri("/documents")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(form)
+                .retrieve()
+                .toBodilessEntity();
+
+        String location = String.valueOf(resp.getHeaders().getLocation());
+        int idx = location.lastIndexOf("/documents/");
+        assertTrue(idx >= 0, "Upload refusé: redirection vers " + location);
+        return Long.parseLong(location.substring(idx + "/documents/".length()).replaceAll("\\D.*$", ""));
+    }
+
+    private boolean allFinished(List<Long> ids) {
+        for (Document d : documentRepo.findAllById(ids)) {
+            if (d.getStatus() != DocumentStatus.DONE && d.getStatus() != DocumentStatus.DONE_WITH_ERRORS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String percentile(double p) {
+        Timer timer = meterRegistry.find("booklab.page.duration").tag("status", "done").timer();
+        if (timer == null) return "n/a";
+        for (ValueAtPercentile v : timer.takeSnapshot().percentileValues()) {
+            if (v.percentile() == p) return Math.round(v.value(TimeUnit.MILLISECONDS)) + " ms";
+        }
+        return "n/a";
+    }
+
+    private static long longProp(String name, long def) {
+        return Long.parseLong(System.getProperty("booklab.load." + name, String.valueOf(def)));
+    }
+
+    private static double doubleProp(String name, double def) {
+        return Double.parseDouble(System.getProperty("booklab.load." + name, String.valueOf(def)));
+    }
+}
@@ -0,0 +1,117 @@
+package com.booklab.demo.load;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Temps jusqu'à la première requête servie (GET / en 200), jar lancé dans un processus séparé:
+ * démarrage standard vs profil Maven fast-start (AOT + archive AppCDS).
+ * Désactivé par défaut; les jars doivent être construits avant:
+ *   ./mvnw -Pfast-start -DskipTests package
+ *   ./mvnw test -Dtest=StartupTimeTest -Dbooklab.startup=true -Dbooklab.startup.runs=5
+ * Journaux des démarrages dans target/startup-logs.
+ */
+@EnabledIfSystemProperty(named = "booklab.startup", matches = "true")
+class StartupTimeTest {
+
+    private static final Path TARGET = Paths.get("target").toAbsolutePath();
+    private static final String JAR = "demo-0.0.1-SNAPSHOT.jar";
+    private static final Duration MAX_STARTUP = Duration.ofMinutes(3);
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    record Variant(String name, List<String> jvmArgs, Path jar) {}
+
+    @Test
+    void timeToFirstRequest() throws Exception {
+        int runs = Integer.getInteger("booklab.startup.runs", 3);
+        Path fastDir = TARGET.resolve("fast-start");
+        List<Variant> variants = List.of(
+                new Variant("standard", List.of(), TARGET.resolve(JAR)),
+                new Variant("fast-start", List.of(
+                        "-XX:SharedArchiveFile=" + fastDir.resolve("app.jsa"),
+                        "-Dspring.aot.enabled=true"), fastDir.resolve(JAR)));
+
+        for (Variant v : variants) {
+            assertTrue(Files.exists(v.jar()), "jar absent (./mvnw -Pfast-start -DskipTests package): " + v.jar());
+        }
+
+        StringBuilder report = new StringBuilder("\n=== Démarrage: temps jusqu'à la première requête (" + runs + " essais) ===\n");
+        List<Long> medians = new ArrayList<>();
+        for (Variant v : variants) {
+            List<Long> times = new ArrayList<>();
+            for (int i = 0; i < runs; i++) times.add(measure(v, i));
+            times.sort(null);
+            long median = times.get(times.size() / 2);
+            medians.add(median);
+            report.append(String.format("%-11s médiane %6d ms  min %6d ms  max %6d ms%n",
+                    v.name(), median, times.get(0), times.get(times.size() - 1)));
+        }
+        report.append(String.format("gain: %.1fx%n", medians.get(0) / (double) medians.get(1)));
+        System.out.println(report);
+    }
+
+    /** Lance le jar (base en mémoire, port libre) et chronomètre jusqu'au premier GET / réussi. */
+    private long measure(Variant v, int run) throws Exception {
+        int port = freePort();
+        Path logs = Files.createDirectories(TARGET.resolve("startup-logs"));
+        Path storage = TARGET.resolve("startup-storage").resolve(v.name() + "-" + run);
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.addAll(v.jvmArgs());
+        cmd.addAll(List.of("-jar", v.jar().toString(),
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:startup",
+                "--app.storage.root=" + storage));
+
+        URI home = URI.create("http://127.0.0.1:" + port + "/");
+        long t0 = System.nanoTime();
+        Process p = new ProcessBuilder(cmd)
+                .redirectErrorStream(true)
+                .redirectOutput(logs.resolve(v.name() + "-" + run + ".log").toFile())
+                .start();
+        try {
+            while (true) {
+                if (!p.isAlive()) throw new IllegalStateException(v.name() + ": processus terminé (code " + p.exitValue() + ")");
+                if (System.nanoTime() - t0 > MAX_STARTUP.toNanos()) throw new IllegalStateException(v.name() + ": délai dépassé");
+                if (ready(home)) return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+                Thread.sleep(20);
+            }
+        } finally {
+            p.destroy();
+            if (!p.waitFor(30, TimeUnit.SECONDS)) p.destroyForcibly().waitFor();
+        }
+    }
+
+    private boolean ready(URI uri) throws InterruptedException {
+        try {
+            HttpRequest req = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+            return http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
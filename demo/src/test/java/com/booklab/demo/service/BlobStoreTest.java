@@ -0,0 +1,153 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.DocumentStatus;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.PageInputType;
+import com.booklab.demo.domain.PageStatus;
+import com.booklab.demo.domain.StoredBlob;
+import com.booklab.demo.repo.BlobRepository;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Références des blobs: dépôt, doublon, libération, suppression de document et GC. */
+@SpringBootTest
+class BlobStoreTest {
+
+    private static final AtomicLong seed = new AtomicLong(System.nanoTime());
+
+    @Autowired
+    BlobStore blobs;
+
+    @Autowired
+    BlobRepository blobRepo;
+
+    @Autowired
+    DocumentRepository documentRepo;
+
+    @Autowired
+    PageRepository pageRepo;
+
+    @Autowired
+    ProcessingService processing;
+
+    /** Contenu propre à chaque appel: la base et le stockage sont partagés entre tests. */
+    private static byte[] unique() {
+        byte[] b = new byte[4096];
+        new Random(seed.incrementAndGet()).nextBytes(b);
+        return b;
+    }
+
+    private int refs(String hash) {
+        return blobRepo.findById(hash).map(StoredBlob::getRefCount).orElse(-1);
+    }
+
+    @Test
+    void sameContentIsStoredOnceAndCounted() throws Exception {
+        byte[] content = unique();
+        BlobStore.BlobRef a = blobs.put(content, ".jpg");
+        BlobStore.BlobRef b = blobs.put(content, ".jpg");
+
+        assertFalse(a.duplicate());
+        assertTrue(b.duplicate());
+        assertEquals(a.hash(), b.hash());
+        assertEquals(a.path(), b.path());
+        assertEquals(content.length, b.size());
+        assertEquals(2, refs(a.hash()));
+        assertTrue(BlobStore.isBlobPath(a.path()));
+        assertEquals(a.hash(), BlobStore.sha256(blobs.resolve(a.hash())));
+    }
+
+    @Test
+    void garbageCollectionRemovesOnlyUnreferencedBlobs() throws Exception {
+        BlobStore.BlobRef kept = blobs.put(unique(), ".jpg");
+        byte[] content = unique();
+        BlobStore.BlobRef shared = blobs.put(content, ".png");
+        blobs.put(content, ".png");
+        Path keptFile = blobs.resolve(kept.hash());
+        Path sharedFile = blobs.resolve(shared.hash());
+
+        blobs.release(shared.hash());
+        blobs.collectGarbage();
+        assertEquals(1, refs(shared.hash()));
+        assertTrue(Files.exists(sharedFile));
+
+        blobs.release(shared.hash());
+        assertEquals(0, refs(shared.hash()));
+        blobs.collectGarbage();
+        assertEquals(-1, refs(shared.hash()));
+        assertNull(blobs.resolve(shared.hash()));
+        assertFalse(Files.exists(sharedFile));
+
+        assertEquals(1, refs(kept.hash()));
+        assertTrue(Files.exists(keptFile));
+    }
+
+    @Test
+    void releaseNeverGoesBelowZero() throws Exception {
+        BlobStore.BlobRef ref = blobs.put(unique(), ".jpg");
+        blobs.release(ref.hash());
+        blobs.release(ref.hash());
+        assertEquals(0, refs(ref.hash()));
+
+        // contenu redéposé avant le GC: une seule référence, pas un reliquat négatif
+        blobs.put(Files.readAllBytes(blobs.resolve(ref.hash())), ".jpg");
+        assertEquals(1, refs(ref.hash()));
+
+        blobs.release(null);
+        blobs.release("0".repeat(64));
+    }
+
+    @Test
+    void deletingADocumentReleasesOnlyItsReferences() throws Exception {
+        byte[] shared = unique();
+        byte[] own = unique();
+        Document first = document("premier", blobs.put(shared, ".jpg"), blobs.put(own, ".jpg"));
+        Document second = document("second", blobs.put(shared, ".jpg"));
+        String sharedHash = pageRepo.findByDocumentIdOrderByPageNumberAsc(second.getId()).get(0).getImageHash();
+        String ownHash = pageRepo.findByDocumentIdOrderByPageNumberAsc(first.getId()).get(1).getImageHash();
+        Path sharedFile = blobs.resolve(sharedHash);
+        assertEquals(2, refs(sharedHash));
+
+        assertTrue(processing.deleteDocument(first.getId()));
+        assertEquals(1, refs(sharedHash), "l'image reste référencée par le second document");
+        assertTrue(Files.exists(sharedFile));
+        assertEquals(-1, refs(ownHash));
+
+        assertTrue(processing.deleteDocument(second.getId()));
+        assertEquals(-1, refs(sharedHash));
+        assertFalse(Files.exists(sharedFile));
+    }
+
+    private Document document(String title, BlobStore.BlobRef... images) {
+        Document doc = new Document();
+        doc.setTitle(title);
+        doc.setStatus(DocumentStatus.UPLOADED);
+        doc = documentRepo.save(doc);
+        int n = 1;
+        for (BlobStore.BlobRef img : images) {
+            Page p = new Page();
+            p.setDocument(doc);
+            p.setPageNumber(n++);
+            p.setInputType(PageInputType.IMAGE);
+            p.setStatus(PageStatus.PENDING);
+            p.setImagePath(img.path());
+            p.setImageHash(img.hash());
+            pageRepo.save(p);
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,72 @@
+package com.booklab.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CancelTokenTest {
+
+    @Test
+    void cancelStopsRegisteredCallsOnly() {
+        CancelToken token = new CancelToken();
+        CompletableFuture<String> inflight = token.register(new CompletableFuture<>());
+        CompletableFuture<String> finished = token.register(new CompletableFuture<>());
+        token.unregister(finished);
+
+        token.cancel("annulé");
+
+        assertTrue(inflight.isCancelled());
+        assertFalse(finished.isCancelled());
+        assertTrue(token.isCancelled());
+        assertFalse(token.isExpired());
+        assertEquals("annulé", token.reason());
+        CancellationException e = assertThrows(CancellationException.class, token::throwIfCancelled);
+        assertEquals("annulé", e.getMessage());
+    }
+
+    @Test
+    void callRegisteredAfterCancelIsStoppedAtOnce() {
+        CancelToken token = new CancelToken();
+        token.cancel("annulé");
+        assertTrue(token.register(new CompletableFuture<>()).isCancelled());
+    }
+
+    @Test
+    void expireMarksTheTokenExpired() {
+        CancelToken token = new CancelToken();
+        CompletableFuture<String> inflight = token.register(new CompletableFuture<>());
+        token.expire("délai page dépassé (30s)");
+
+        assertTrue(inflight.isCancelled());
+        assertTrue(token.isCancelled());
+        assertTrue(token.isExpired());
+    }
+
+    @Test
+    void firstReasonWins() {
+        CancelToken token = new CancelToken();
+        token.cancel("annulé");
+        token.expire("délai page dépassé");
+        assertEquals("annulé", token.reason());
+        assertFalse(token.isExpired());
+    }
+
+    @Test
+    void noneIgnoresEverything() {
+        CompletableFuture<String> f = CancelToken.NONE.register(new CompletableFuture<>());
+        CancelToken.NONE.cancel("annulé");
+
+        assertFalse(f.isCancelled());
+        assertFalse(CancelToken.NONE.isCancelled());
+        assertNull(CancelToken.NONE.reason());
+        assertDoesNotThrow(CancelToken.NONE::throwIfCancelled);
+    }
+}
@@ -0,0 +1,52 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.DocumentStatus;
+import com.booklab.demo.repo.DocumentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class DocumentListingTest {
+
+    @Autowired
+    DocumentListing listing;
+
+    @Autowired
+    DocumentRepository documentRepo;
+
+    @Test
+    void cacheStaysBoundedWhateverCursorsClientsSend() {
+        listing.invalidate();
+        Instant t = Instant.parse("2020-01-01T00:00:00Z");
+        for (long i = 0; i < 500; i++) {
+            listing.page(new DocumentListing.Cursor(t.plusSeconds(i), i));
+        }
+        assertEquals(64, listing.cachedPages());
+
+        // le curseur lu récemment reste, le plus ancien est parti
+        DocumentListing.Cursor recent = new DocumentListing.Cursor(t.plusSeconds(499), 499L);
+        assertSame(listing.page(recent), listing.page(recent));
+    }
+
+    @Test
+    void writingADocumentInvalidatesTheListing() {
+        listing.page(null);
+        assertTrue(listing.cachedPages() > 0);
+
+        Document doc = new Document();
+        doc.setTitle("nouveau");
+        doc.setStatus(DocumentStatus.UPLOADED);
+        doc = documentRepo.save(doc);
+
+        assertEquals(0, listing.cachedPages());
+        assertEquals(doc.getId(), listing.page(null).documents().get(0).getId());
+    }
+}
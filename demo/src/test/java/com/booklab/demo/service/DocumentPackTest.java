@@ -0,0 +1,136 @@
+package com.booklab.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentPackTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content);
+    }
+
+    private static String text(ByteBuffer b) {
+        byte[] bytes = new byte[b.remaining()];
+        b.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void roundTripKeepsEntriesAndOrder() throws IOException {
+        Map<String, DocumentPack.Source> entries = new LinkedHashMap<>();
+        entries.put("b.jpg", DocumentPack.Source.of(file("b", "image B")));
+        entries.put("a.png", DocumentPack.Source.of(file("a", "image A, plus longue")));
+        entries.put("vide.bin", DocumentPack.Source.of(file("vide", "")));
+        entries.put("עמוד.jpg", DocumentPack.Source.of(file("he", "שלום")));
+        Path pack = dir.resolve(PackStore.PACK_FILE);
+        DocumentPack.write(pack, entries);
+
+        try (DocumentPack p = DocumentPack.open(pack)) {
+            assertEquals(List.of("b.jpg", "a.png", "vide.bin", "עמוד.jpg"), List.copyOf(p.names()));
+            assertEquals("image B", text(p.read("b.jpg")));
+            assertEquals("image A, plus longue", text(p.read("a.png")));
+            assertEquals("", text(p.read("vide.bin")));
+            assertEquals("שלום", text(p.read("עמוד.jpg")));
+            assertTrue(p.read("a.png").isReadOnly());
+        }
+        assertFalse(Files.exists(dir.resolve(PackStore.PACK_FILE + ".tmp")));
+    }
+
+    @Test
+    void indexLookup() throws IOException {
+        Path pack = dir.resolve(PackStore.PACK_FILE);
+        DocumentPack.write(pack, Map.of("x.jpg", DocumentPack.Source.of(file("x", "0123456789"))));
+
+        try (DocumentPack p = DocumentPack.open(pack)) {
+            assertTrue(p.contains("x.jpg"));
+            assertFalse(p.contains("y.jpg"));
+            assertNull(p.read("y.jpg"));
+            assertNull(p.source("y.jpg"));
+
+            // région exacte dans le fichier: en-tête puis données
+            DocumentPack.Source s = p.source("x.jpg");
+            assertEquals(pack, s.file());
+            assertEquals(DocumentPack.HEADER_SIZE, s.offset());
+            assertEquals(10, s.length());
+        }
+    }
+
+    @Test
+    void entriesCanBeCopiedFromAnotherPack() throws IOException {
+        Path first = dir.resolve("first.pack");
+        Map<String, DocumentPack.Source> entries = new LinkedHashMap<>();
+        entries.put("a.jpg", DocumentPack.Source.of(file("a", "AAAA")));
+        entries.put("b.jpg", DocumentPack.Source.of(file("b", "BBBBBB")));
+        DocumentPack.write(first, entries);
+
+        Path second = dir.resolve("second.pack");
+        try (DocumentPack p = DocumentPack.open(first)) {
+            DocumentPack.write(second, Map.of("b.jpg", p.source("b.jpg")));
+        }
+        try (DocumentPack p = DocumentPack.open(second)) {
+            assertEquals("BBBBBB", text(p.read("b.jpg")));
+            assertFalse(p.contains("a.jpg"));
+        }
+    }
+
+    @Test
+    void rewriteReplacesAtomicallyAndOpenReadersKeepTheirView() throws IOException {
+        Path pack = dir.resolve(PackStore.PACK_FILE);
+        DocumentPack.write(pack, Map.of("p.jpg", DocumentPack.Source.of(file("v1", "version 1"))));
+
+        try (DocumentPack old = DocumentPack.open(pack)) {
+            DocumentPack.write(pack, Map.of(
+                    "p.jpg", DocumentPack.Source.of(file("v2", "version 2, réécrite")),
+                    PackStore.PDF_ENTRY, DocumentPack.Source.of(file("pdf", "%PDF"))));
+
+            // le lecteur déjà ouvert garde l'ancien fichier, le nouveau voit la nouvelle archive
+            assertEquals("version 1", text(old.read("p.jpg")));
+            try (DocumentPack fresh = DocumentPack.open(pack)) {
+                assertEquals("version 2, réécrite", text(fresh.read("p.jpg")));
+                assertEquals("%PDF", text(fresh.read(PackStore.PDF_ENTRY)));
+            }
+        }
+        assertFalse(Files.exists(dir.resolve(PackStore.PACK_FILE + ".tmp")));
+    }
+
+    @Test
+    void truncatedSourceFailsAndLeavesThePackUntouched() throws IOException {
+        Path pack = dir.resolve(PackStore.PACK_FILE);
+        DocumentPack.write(pack, Map.of("p.jpg", DocumentPack.Source.of(file("v1", "version 1"))));
+        byte[] before = Files.readAllBytes(pack);
+
+        // source annoncée plus longue que le fichier (tronqué après la lecture de sa taille)
+        Path shortFile = file("court", "abc");
+        IOException e = assertThrows(IOException.class, () ->
+                DocumentPack.write(pack, Map.of("p.jpg", new DocumentPack.Source(shortFile, 0, 100))));
+        assertTrue(e.getMessage().contains("tronquée"));
+
+        assertArrayEquals(before, Files.readAllBytes(pack));
+        assertFalse(Files.exists(dir.resolve(PackStore.PACK_FILE + ".tmp")));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotPacks() throws IOException {
+        assertThrows(IOException.class, () -> DocumentPack.open(file("court.pack", "BKPACK")));
+        assertThrows(IOException.class, () -> DocumentPack.open(file("autre.pack", "X".repeat(64))));
+    }
+}
@@ -0,0 +1,67 @@
+package com.booklab.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgingPolicyTest {
+
+    private static HedgingPolicy policy(boolean enabled, double maxFraction, long minDelayMs) {
+        return new HedgingPolicy(enabled, 0.9, maxFraction, 10, minDelayMs);
+    }
+
+    private static void record(HedgingPolicy p, long... millis) {
+        for (long ms : millis) p.record("m", Duration.ofMillis(ms));
+    }
+
+    @Test
+    void noDelayWhenDisabledOrTooFewSamples() {
+        HedgingPolicy off = policy(false, 1, 0);
+        record(off, 100, 100, 100, 100, 100, 100, 100, 100, 100, 100);
+        assertNull(off.hedgeDelay("m"));
+
+        HedgingPolicy on = policy(true, 1, 0);
+        assertNull(on.hedgeDelay("m"));
+        record(on, 100, 100, 100, 100, 100, 100, 100, 100, 100);
+        assertNull(on.hedgeDelay("m"), "9 mesures sur 10 requises");
+        record(on, 100);
+        assertEquals(Duration.ofMillis(100), on.hedgeDelay("m"));
+        assertNull(on.hedgeDelay("autre-modele"));
+    }
+
+    @Test
+    void delayIsThePercentileFlooredByMinDelay() {
+        HedgingPolicy p = policy(true, 1, 0);
+        record(p, 10, 20, 30, 40, 50, 60, 70, 80, 90, 1000);
+        assertEquals(Duration.ofMillis(90), p.hedgeDelay("m"));
+
+        HedgingPolicy floored = policy(true, 1, 500);
+        record(floored, 10, 20, 30, 40, 50, 60, 70, 80, 90, 1000);
+        assertEquals(Duration.ofMillis(500), floored.hedgeDelay("m"));
+    }
+
+    @Test
+    void abandonedSlowCallsKeepTheThresholdUp() {
+        HedgingPolicy p = policy(true, 1, 0);
+        record(p, 100, 100, 100, 100, 100, 100, 100, 100, 100, 100);
+        assertEquals(Duration.ofMillis(100), p.hedgeDelay("m"));
+        // primaires lents abandonnés au profit du doublon: enregistrés avec leur temps écoulé
+        record(p, 400, 400, 400, 400, 400, 400, 400, 400, 400, 400);
+        assertEquals(Duration.ofMillis(400), p.hedgeDelay("m"));
+    }
+
+    @Test
+    void hedgesStayWithinTheBudget() {
+        HedgingPolicy p = policy(true, 0.1, 0);
+        assertFalse(p.tryAcquireHedge(), "aucun appel: pas de doublon");
+        for (int i = 0; i < 20; i++) p.hedgeDelay("m");
+        assertTrue(p.tryAcquireHedge());
+        assertTrue(p.tryAcquireHedge());
+        assertFalse(p.tryAcquireHedge(), "2 doublons pour 20 appels à 10%");
+    }
+}
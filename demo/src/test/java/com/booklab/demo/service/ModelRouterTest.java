@@ -0,0 +1,99 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.PageInputType;
+import com.booklab.demo.service.OpenAiResponsesService.ExtractTranslateResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+class ModelRouterTest {
+
+    static final String HE = "בראשית ברא אלהים את השמים ואת הארץ";
+    static final String NIKUD = "בְּרֵאשִׁית בָּרָא אֱלֹהִים אֵת הַשָּׁמַיִם וְאֵת הָאָרֶץ";
+    static final String FR = "Au commencement, Dieu créa le ciel et la terre.";
+
+    static ModelRouter router(String fastText, String fastVision) {
+        return new ModelRouter("heavy-text", "heavy-vision", 500, 5000,
+                fastText, fastVision, 120, 4000, 3_000_000, 6000);
+    }
+
+    private final ModelRouter router = router("fast-text", "fast-vision");
+
+    static Stream<Arguments> quality() {
+        PageInputType T = PageInputType.TEXT;
+        PageInputType I = PageInputType.IMAGE;
+        return Stream.of(
+                arguments("complet", T, HE, NIKUD, FR, null),
+                arguments("tout vide", T, "", "", "", "empty"),
+                arguments("null partout", T, null, null, null, "empty"),
+                arguments("hébreu absent, français présent", T, "", NIKUD, FR, "no_hebrew"),
+                arguments("texte latin au lieu d'hébreu", T, "Bereshit bara", NIKUD, FR, "no_hebrew"),
+                arguments("texte fourni, hébreu perdu", T, "", "", FR, "no_hebrew"),
+                arguments("français absent", T, HE, NIKUD, "  ", "no_french"),
+                arguments("niqqud vide", T, HE, "", FR, "no_niqqud"),
+                arguments("niqqud sans signes", T, HE, HE, FR, "no_niqqud"),
+                arguments("français tronqué", T, HE, NIKUD, "Au", "short_french"),
+                // limite: exactement un quart de la longueur hébraïque reste acceptable
+                arguments("français au quart", T, "אבגדאבגדאבגדאבגד", "אְ", "abcd", null),
+                arguments("français sous le quart", T, "אבגדאבגדאבגדאבגדא", "אְ", "abcd", "short_french"),
+                arguments("espaces ignorés", T, "  " + HE + "  ", NIKUD, "  " + FR + "  ", null),
+                // image sans texte hébreu: réponse correcte, pas d'appel lourd
+                arguments("image: page blanche", I, "", "", "", null),
+                arguments("image: page blanche (null)", I, null, null, null, null),
+                arguments("image: illustration décrite", I, "", "", "Gravure: le chandelier du Temple.", null),
+                arguments("image: titre latin", I, "   ", "", "Amsterdam, 1724", null),
+                // image avec texte: mêmes exigences que le texte fourni
+                arguments("image: page complète", I, HE, NIKUD, FR, null),
+                arguments("image: hébreu sans niqqud", I, HE, HE, FR, "no_niqqud"),
+                arguments("image: champ hébreu en latin", I, "Bereshit bara", "", FR, "no_hebrew"),
+                arguments("image: niqqud sans texte hébreu", I, "", NIKUD, FR, "no_hebrew"),
+                arguments("image: français absent", I, HE, NIKUD, "", "no_french")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("quality")
+    void qualityProblem(String label, PageInputType input, String he, String nikud, String fr, String expected) {
+        assertEquals(expected, router.qualityProblem(input, new ExtractTranslateResult(he, nikud, fr)));
+    }
+
+    static Stream<Arguments> routes() {
+        return Stream.of(
+                arguments(PageInputType.IMAGE, 1_000_000L, List.of("fast-vision", "heavy-vision")),
+                arguments(PageInputType.IMAGE, 3_000_000L, List.of("fast-vision", "heavy-vision")),
+                arguments(PageInputType.IMAGE, 3_000_001L, List.of("heavy-vision")),
+                arguments(PageInputType.TEXT, 6000L, List.of("fast-text", "heavy-text")),
+                arguments(PageInputType.TEXT, 6001L, List.of("heavy-text"))
+        );
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @MethodSource("routes")
+    void route(PageInputType type, long size, List<String> models) {
+        assertEquals(models, router.route(type, size).stream().map(ModelRouter.ModelTier::model).toList());
+    }
+
+    @Test
+    void noFastTierWhenUnsetOrSameAsHeavy() {
+        ModelRouter r = router("", "heavy-vision");
+        assertEquals(List.of("heavy-text"), r.route(PageInputType.TEXT, 10).stream().map(ModelRouter.ModelTier::model).toList());
+        assertEquals(List.of("heavy-vision"), r.route(PageInputType.IMAGE, 10).stream().map(ModelRouter.ModelTier::model).toList());
+    }
+
+    @Test
+    void tiersCarryTheirLimits() {
+        List<ModelRouter.ModelTier> tiers = router.route(PageInputType.TEXT, 10);
+        assertEquals("fast", tiers.get(0).name());
+        assertEquals(4000, tiers.get(0).maxOutputTokens());
+        assertEquals(120, tiers.get(0).timeout().toSeconds());
+        assertEquals("heavy", tiers.get(1).name());
+        assertEquals(5000, tiers.get(1).maxOutputTokens());
+    }
+}
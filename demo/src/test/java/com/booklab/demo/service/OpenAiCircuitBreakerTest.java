@@ -0,0 +1,144 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.service.OpenAiCircuitBreaker.CircuitOpenException;
+import com.booklab.demo.service.OpenAiCircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenAiCircuitBreakerTest {
+
+    /** Horloge avancée à la main. */
+    static final class TestClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TestClock clock = new TestClock();
+    private final OpenAiCircuitBreaker breaker = new OpenAiCircuitBreaker(3, 60, 200, registry, clock);
+
+    private State state() {
+        return breaker.status().state();
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.acquire();
+            breaker.onFailure("HTTP 503");
+        }
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        fail(2);
+        breaker.onSuccess();
+        fail(2);
+        assertEquals(State.CLOSED, state());
+        assertEquals(2, breaker.status().consecutiveFailures());
+
+        fail(1);
+        assertEquals(State.OPEN, state());
+        assertFalse(breaker.isClosed());
+        assertEquals(clock.instant().plusSeconds(60), breaker.status().retryAt());
+        assertEquals("HTTP 503", breaker.status().lastError());
+        assertEquals(2, registry.get("booklab.openai.circuit.state").gauge().value());
+    }
+
+    @Test
+    void openRejectsUntilTheDelayThenLetsOneProbeThrough() {
+        fail(3);
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+        assertTrue(breaker.canProbe());
+        assertEquals(Duration.ofSeconds(60), breaker.untilProbe());
+
+        clock.advance(Duration.ofSeconds(59));
+        assertEquals(Duration.ofSeconds(1), breaker.untilProbe());
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(Duration.ZERO, breaker.untilProbe());
+        assertDoesNotThrow(breaker::acquire);
+        assertEquals(State.HALF_OPEN, state());
+        assertFalse(breaker.canProbe());
+        // un seul appel de test à la fois
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+    }
+
+    @Test
+    void successfulProbeCloses() {
+        fail(3);
+        clock.advance(Duration.ofSeconds(60));
+        breaker.acquire();
+        breaker.onSuccess();
+
+        assertEquals(State.CLOSED, state());
+        assertTrue(breaker.isClosed());
+        assertEquals(0, breaker.status().consecutiveFailures());
+        assertNull(breaker.status().retryAt());
+        assertNull(breaker.status().lastError());
+        assertDoesNotThrow(breaker::acquire);
+    }
+
+    @Test
+    void failedProbeReopensWithDoubledCappedDelay() {
+        fail(3);
+        clock.advance(Duration.ofSeconds(60));
+        fail(1);
+        assertEquals(State.OPEN, state());
+        assertEquals(Duration.ofSeconds(120), breaker.untilProbe());
+
+        clock.advance(Duration.ofSeconds(120));
+        fail(1);
+        assertEquals(Duration.ofSeconds(200), breaker.untilProbe(), "plafonné à max-open-seconds");
+
+        // après une fermeture, le délai repart de la valeur initiale
+        clock.advance(Duration.ofSeconds(200));
+        breaker.acquire();
+        breaker.onSuccess();
+        fail(3);
+        assertEquals(Duration.ofSeconds(60), breaker.untilProbe());
+    }
+
+    @Test
+    void cancelledProbeFreesTheSlot() {
+        fail(3);
+        clock.advance(Duration.ofSeconds(60));
+        breaker.acquire();
+        breaker.onIgnored();
+
+        assertEquals(State.HALF_OPEN, state());
+        assertTrue(breaker.canProbe());
+        assertDoesNotThrow(breaker::acquire);
+    }
+}
@@ -0,0 +1,221 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.service.OpenAiResponsesService.ExtractTranslateResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.booklab.demo.service.ModelRouterTest.FR;
+import static com.booklab.demo.service.ModelRouterTest.HE;
+import static com.booklab.demo.service.ModelRouterTest.NIKUD;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escalade rapide -> lourd contre un faux endpoint Responses local: chaque appel reçoit la réponse
+ * suivante du script et le modèle demandé est noté. Couvre aussi l'annulation d'un appel en vol.
+ */
+class OpenAiResponsesServiceTest {
+
+    private static final ObjectMapper om = new ObjectMapper();
+    /** Réponse scriptée: le serveur ne répond pas avant la fin du test. */
+    private static final String HANG = "hang";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Deque<String> script = new ArrayDeque<>();
+    private final List<String> models = new CopyOnWriteArrayList<>();
+    private final CountDownLatch requested = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService exchanges = Executors.newCachedThreadPool();
+    private OpenAiCircuitBreaker breaker;
+    private HedgingPolicy hedging;
+    private HttpServer server;
+    private OpenAiResponsesService service;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/responses", ex -> {
+            models.add(om.readTree(ex.getRequestBody()).path("model").asText());
+            requested.countDown();
+            String body;
+            synchronized (script) {
+                body = script.poll();
+            }
+            if (HANG.equals(body)) {
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                body = null;
+            }
+            byte[] bytes = (body == null ? "{}" : body).getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().add("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, bytes.length);
+            ex.getResponseBody().write(bytes);
+            ex.close();
+        });
+        // un échange suspendu ne bloque pas les suivants (doublon)
+        server.setExecutor(exchanges);
+        server.start();
+        breaker = new OpenAiCircuitBreaker(5, 60, 60, registry);
+        // hedging actif dès une mesure; sans budget tant qu'un test n'en donne pas
+        hedging = new HedgingPolicy(true, 0.95, 0, 1, 0);
+
+        service = new OpenAiResponsesService(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/responses", "test-key",
+                ModelRouterTest.router("fast-text", "fast-vision"),
+                hedging,
+                breaker,
+                new PipelineMetrics(registry));
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        server.stop(0);
+        exchanges.shutdownNow();
+    }
+
+    private static String completed(String he, String nikud, String fr) throws JsonProcessingException {
+        String out = om.writeValueAsString(Map.of("hebrew_plain", he, "hebrew_niqqud", nikud, "french", fr));
+        return om.writeValueAsString(Map.of("status", "completed", "output_text", out));
+    }
+
+    private static String incomplete() {
+        return "{\"status\":\"incomplete\",\"incomplete_details\":{\"reason\":\"max_output_tokens\"}}";
+    }
+
+    private static String notJson() throws JsonProcessingException {
+        return om.writeValueAsString(Map.of("status", "completed", "output_text", "désolé, je ne peux pas"));
+    }
+
+    private double escalations(String reason) {
+        var c = registry.find("booklab.openai.retries").tag("reason", "escalate_" + reason).counter();
+        return c == null ? 0 : c.count();
+    }
+
+    @Test
+    void goodFastResultStaysOnFastTier() throws Exception {
+        script.add(completed(HE, NIKUD, FR));
+        ExtractTranslateResult r = service.nikudAndTranslateFromText(HE, CancelToken.NONE);
+        assertEquals(FR, r.frText());
+        assertEquals(List.of("fast-text"), models);
+        assertNull(registry.find("booklab.openai.retries").counter());
+    }
+
+    @Test
+    void truncatedFastOutputEscalatesToHeavy() throws Exception {
+        script.add(incomplete());
+        script.add(completed(HE, NIKUD, FR));
+        ExtractTranslateResult r = service.nikudAndTranslateFromText(HE, CancelToken.NONE);
+        assertEquals(NIKUD, r.hebrewNikud());
+        assertEquals(List.of("fast-text", "heavy-text"), models);
+        assertEquals(1, escalations("bad_output"));
+    }
+
+    @Test
+    void poorQualityEscalatesAndLastTierKeepsItsImperfectResult() throws Exception {
+        script.add(completed(HE, HE, FR));
+        script.add(completed(HE, HE, "Au"));
+        ExtractTranslateResult r = service.nikudAndTranslateFromText(HE, CancelToken.NONE);
+        assertEquals("Au", r.frText(), "le dernier tier renvoie son résultat même imparfait");
+        assertEquals(List.of("fast-text", "heavy-text"), models);
+        assertEquals(1, escalations("no_niqqud"));
+    }
+
+    @Test
+    void unparsableOutputOnLastTierIsRethrown() throws Exception {
+        script.add(notJson());
+        script.add(notJson());
+        assertThrows(JsonProcessingException.class, () -> service.nikudAndTranslateFromText(HE, CancelToken.NONE));
+        assertEquals(List.of("fast-text", "heavy-text"), models);
+        assertEquals(1, escalations("parse_error"));
+    }
+
+    @Test
+    void blankImagePageStaysOnFastTier() throws Exception {
+        script.add(completed("", "", ""));
+        ByteBuffer image = ByteBuffer.wrap(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9});
+        ExtractTranslateResult r = service.extractTranslateFromImage(image, "page-blanche.jpg", CancelToken.NONE);
+        assertEquals("", r.hebrewPlain());
+        assertEquals(List.of("fast-vision"), models);
+        assertNull(registry.find("booklab.openai.retries").counter());
+    }
+
+    @Test
+    void largePageGoesStraightToHeavy() throws Exception {
+        script.add(completed(HE, HE, FR));
+        ExtractTranslateResult r = service.nikudAndTranslateFromText(HE.repeat(200), CancelToken.NONE);
+        assertEquals(HE, r.hebrewNikud());
+        assertEquals(List.of("heavy-text"), models);
+    }
+
+    @Test
+    void cancellingTheTokenAbortsTheCallInFlight() throws Exception {
+        script.add(HANG);
+        CancelToken token = new CancelToken();
+        Thread canceller = new Thread(() -> {
+            try {
+                if (requested.await(10, TimeUnit.SECONDS)) token.cancel("annulé");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        canceller.start();
+
+        long t0 = System.nanoTime();
+        assertThrows(CancellationException.class, () -> service.nikudAndTranslateFromText(HE, token));
+        assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(20), "l'appel doit être interrompu, pas attendu");
+        canceller.join();
+
+        // une annulation n'est pas une panne: le disjoncteur reste fermé et sans échec
+        assertTrue(breaker.isClosed());
+        assertEquals(0, breaker.status().consecutiveFailures());
+        assertEquals(List.of("fast-text"), models);
+        // ni la page annulée ni sa durée ne sont une latence du modèle
+        assertEquals(0, hedging.samples("fast-text"));
+    }
+
+    @Test
+    void abandonedPrimaryIsMeasuredWhenTheHedgeWins() throws Exception {
+        hedging = new HedgingPolicy(true, 0.95, 1, 1, 0);
+        service = new OpenAiResponsesService(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/responses", "test-key",
+                ModelRouterTest.router("fast-text", "fast-vision"), hedging, breaker, new PipelineMetrics(registry));
+        hedging.record("fast-text", Duration.ofMillis(50));
+        script.add(HANG);
+        script.add(completed(HE, NIKUD, FR));
+
+        ExtractTranslateResult r = service.nikudAndTranslateFromText(HE, CancelToken.NONE);
+        assertEquals(FR, r.frText());
+        assertEquals(List.of("fast-text", "fast-text"), models);
+        // mesure initiale + doublon gagnant (enregistré à sa complétion) + primaire abandonné
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (hedging.samples("fast-text") < 3 && System.nanoTime() < until) Thread.onSpinWait();
+        assertEquals(3, hedging.samples("fast-text"));
+    }
+}
@@ -0,0 +1,167 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.DocumentStatus;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.PageInputType;
+import com.booklab.demo.domain.PageStatus;
+import com.booklab.demo.domain.StoredBlob;
+import com.booklab.demo.repo.BlobRepository;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Empaquetage d'un document: bascule des pages sur l'archive sans écraser ce que le traitement a écrit. */
+@SpringBootTest
+class PackStoreTest {
+
+    @Autowired
+    PackStore packs;
+
+    @Autowired
+    BlobStore blobs;
+
+    @Autowired
+    StorageService storage;
+
+    @Autowired
+    BlobRepository blobRepo;
+
+    @Autowired
+    DocumentRepository documentRepo;
+
+    @Autowired
+    PageRepository pageRepo;
+
+    @Autowired
+    ProcessingService processing;
+
+    private Page page(Document doc, int number, BlobStore.BlobRef img) {
+        Page p = new Page();
+        p.setDocument(doc);
+        p.setPageNumber(number);
+        p.setInputType(PageInputType.IMAGE);
+        p.setStatus(PageStatus.PENDING);
+        p.setImagePath(img.path());
+        p.setImageHash(img.hash());
+        return pageRepo.save(p);
+    }
+
+    private Document document() {
+        Document doc = new Document();
+        doc.setTitle("archive");
+        doc.setStatus(DocumentStatus.UPLOADED);
+        return documentRepo.save(doc);
+    }
+
+    private static byte[] unique(Random rnd) {
+        byte[] b = new byte[3000];
+        rnd.nextBytes(b);
+        return b;
+    }
+
+    @Test
+    void moveImageOnlyTouchesTheImageColumns() {
+        Document doc = document();
+        Page loaded = page(doc, 1, new BlobStore.BlobRef("a".repeat(64), "blobs/aa/aa/" + "a".repeat(64) + ".jpg", 1, false));
+
+        // le traitement écrit la page après que l'empaquetage l'a lue
+        Page processed = pageRepo.findById(loaded.getId()).orElseThrow();
+        processed.setStatus(PageStatus.DONE);
+        processed.setFrText("traduction");
+        pageRepo.save(processed);
+
+        String target = "doc-" + doc.getId() + "/" + "a".repeat(64) + ".jpg";
+        assertEquals(1, pageRepo.moveImage(loaded.getId(), loaded.getImagePath(), target, loaded.getImageHash()));
+        Page after = pageRepo.findById(loaded.getId()).orElseThrow();
+        assertEquals(target, after.getImagePath());
+        assertEquals(PageStatus.DONE, after.getStatus());
+        assertEquals("traduction", after.getFrText());
+
+        // chemin changé depuis la lecture: rien n'est modifié
+        assertEquals(0, pageRepo.moveImage(loaded.getId(), loaded.getImagePath(), "doc-0/autre.jpg", null));
+        assertEquals(target, pageRepo.findById(loaded.getId()).orElseThrow().getImagePath());
+    }
+
+    @Test
+    void packingMovesPagesIntoTheArchiveAndReleasesTheirBlobs() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        byte[] first = unique(rnd);
+        byte[] second = unique(rnd);
+        Document doc = document();
+        Page p1 = page(doc, 1, blobs.put(first, ".jpg"));
+        Page p2 = page(doc, 2, blobs.put(second, ".png"));
+        storage.saveDocumentPdf(doc.getId(), "%PDF-1.7".getBytes());
+        assertTrue(pageRepo.findDocumentIdsWithLoosePages().contains(doc.getId()));
+        assertTrue(packs.needsPacking(doc.getId()));
+
+        packs.packDocument(doc.getId());
+
+        assertFalse(pageRepo.findDocumentIdsWithLoosePages().contains(doc.getId()));
+        assertFalse(packs.needsPacking(doc.getId()));
+        List<Page> pages = pageRepo.findByDocumentIdOrderByPageNumberAsc(doc.getId());
+        for (Page p : pages) {
+            assertTrue(p.getImagePath().startsWith("doc-" + doc.getId() + "/"), p.getImagePath());
+            assertEquals(0, blobRepo.findById(p.getImageHash()).map(StoredBlob::getRefCount).orElse(0));
+        }
+        assertEquals(ByteBuffer.wrap(first), storage.readPageImage(pages.get(0)));
+        assertEquals(ByteBuffer.wrap(second), storage.readPageImage(pages.get(1)));
+        assertEquals(p1.getImageHash(), pages.get(0).getImageHash());
+        assertEquals(p2.getImageHash(), pages.get(1).getImageHash());
+        // le PDF libre est intégré puis supprimé: lu dans l'archive
+        assertFalse(Files.exists(storage.resolvePath("doc-" + doc.getId() + "/" + PackStore.PDF_ENTRY)));
+        assertEquals(ByteBuffer.wrap("%PDF-1.7".getBytes()), storage.readFile("doc-" + doc.getId() + "/" + PackStore.PDF_ENTRY));
+
+        // PDF régénéré: fichier libre de nouveau, réintégré au passage suivant
+        storage.saveDocumentPdf(doc.getId(), "%PDF-2".getBytes());
+        assertTrue(packs.needsPacking(doc.getId()));
+    }
+
+    @Test
+    void imagesSharedWithAnotherDocumentStayInTheBlobStore() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        byte[] common = unique(rnd);
+        Document first = document();
+        Page shared = page(first, 1, blobs.put(common, ".jpg"));
+        Page own = page(first, 2, blobs.put(unique(rnd), ".jpg"));
+        Document second = document();
+        page(second, 1, blobs.put(common, ".jpg"));
+        assertEquals(2, blobRepo.findById(shared.getImageHash()).orElseThrow().getRefCount());
+
+        packs.packDocument(first.getId());
+
+        // l'image propre part dans l'archive, l'image commune reste un seul blob pour les deux documents
+        assertTrue(pageRepo.findById(own.getId()).orElseThrow().getImagePath().startsWith("doc-" + first.getId() + "/"));
+        Page kept = pageRepo.findById(shared.getId()).orElseThrow();
+        assertEquals(shared.getImagePath(), kept.getImagePath());
+        assertEquals(2, blobRepo.findById(shared.getImageHash()).orElseThrow().getRefCount());
+        assertFalse(packs.needsPacking(first.getId()));
+        assertFalse(pageRepo.findDocumentIdsWithLoosePages().contains(first.getId()));
+        assertEquals(ByteBuffer.wrap(common), storage.readPageImage(kept));
+
+        // le second document empaqueté garde lui aussi le blob commun
+        packs.packDocument(second.getId());
+        assertEquals(2, blobRepo.findById(shared.getImageHash()).orElseThrow().getRefCount());
+
+        // plus partagée: l'image rejoint l'archive au passage suivant
+        processing.deleteDocument(second.getId());
+        assertTrue(pageRepo.findDocumentIdsWithLoosePages().contains(first.getId()));
+        assertTrue(packs.needsPacking(first.getId()));
+        packs.packDocument(first.getId());
+        kept = pageRepo.findById(shared.getId()).orElseThrow();
+        assertTrue(kept.getImagePath().startsWith("doc-" + first.getId() + "/"), kept.getImagePath());
+        assertEquals(0, blobRepo.findById(shared.getImageHash()).map(StoredBlob::getRefCount).orElse(0));
+        assertEquals(ByteBuffer.wrap(common), storage.readPageImage(kept));
+    }
+}
@@ -0,0 +1,162 @@
+package com.booklab.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ordonnanceur piloté à la main: l'exécuteur met les tâches en file et le test les lance une par une
+ * sur son propre thread. Tâches en file = créneaux occupés.
+ */
+class PageSchedulerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+    private final OpenAiCircuitBreaker breaker = new OpenAiCircuitBreaker(1, 60, 60, registry);
+
+    private PageScheduler scheduler(int workers, int maxParallel, long pageDeadlineSeconds) {
+        return new PageScheduler(tasks::add, breaker, workers, maxParallel, pageDeadlineSeconds, 0, registry);
+    }
+
+    private static List<Long> pages(long from, int count) {
+        return LongStream.range(from, from + count).boxed().toList();
+    }
+
+    private void runOne() {
+        tasks.poll().run();
+    }
+
+    @Test
+    void strideGivesSlotsInProportionToPriority() {
+        PageScheduler s = scheduler(1, 1, 0);
+        List<Long> order = new ArrayList<>();
+        PageScheduler.PageTask record = (pageId, token) -> order.add(pageId);
+
+        s.submit(1L, pages(1000, 30), 2, null, record, reason -> { });
+        s.submit(2L, pages(2000, 30), 1, null, record, reason -> { });
+        for (int i = 0; i < 30; i++) runOne();
+
+        long high = order.stream().filter(id -> id < 2000).count();
+        assertEquals(20, high, "priorité 2 contre 1: deux créneaux sur trois");
+        // les pages d'un document partent dans l'ordre
+        assertEquals(pages(1000, (int) high), order.stream().filter(id -> id < 2000).toList());
+    }
+
+    @Test
+    void maxParallelCapsOneDocument() {
+        PageScheduler s = scheduler(4, 4, 0);
+        s.submit(1L, pages(1, 10), 5, 1, (pageId, token) -> true, reason -> { });
+        assertEquals(1, tasks.size());
+
+        s.submit(2L, pages(100, 10), 5, 2, (pageId, token) -> true, reason -> { });
+        assertEquals(3, tasks.size());
+        assertEquals(3, s.runningSlots());
+    }
+
+    @Test
+    void finalizationWaitsForAFreeSlot() {
+        PageScheduler s = scheduler(1, 1, 0);
+        List<String> completed = new ArrayList<>();
+
+        s.submit(1L, pages(1, 1), 5, null, (pageId, token) -> true, reason -> completed.add("1"));
+        assertEquals(1, tasks.size());
+
+        // document vide: sa finalisation ne doit pas prendre un second créneau
+        s.submit(2L, List.of(), 5, null, (pageId, token) -> true, reason -> completed.add("2"));
+        assertEquals(1, tasks.size());
+        assertEquals(1, s.runningSlots());
+        assertTrue(s.isActive(2L));
+        assertFalse(s.submit(2L, List.of(), 5, null, (pageId, token) -> true, reason -> { }));
+
+        // annulation d'un document sans page démarrée: idem
+        s.submit(3L, pages(10, 2), 5, null, (pageId, token) -> true, reason -> completed.add("3:" + reason));
+        assertEquals(List.of(10L, 11L), s.cancel(3L, "stop"));
+        assertEquals(1, tasks.size());
+        assertEquals(1, s.runningSlots());
+
+        while (!tasks.isEmpty()) {
+            runOne();
+            assertTrue(s.runningSlots() <= 1);
+            assertTrue(tasks.size() <= 1);
+        }
+        assertEquals(List.of("1", "2", "3:stop"), completed);
+        assertEquals(0, s.runningSlots());
+        assertEquals(0, s.activeDocuments());
+    }
+
+    @Test
+    void cancelReturnsUnstartedPagesAndStopsRunningOnes() {
+        PageScheduler s = scheduler(2, 2, 0);
+        AtomicReference<CancelToken> running = new AtomicReference<>();
+        List<String> reasons = new ArrayList<>();
+
+        s.submit(1L, pages(1, 5), 5, 1, (pageId, token) -> {
+            running.set(token);
+            // la page est annulée pendant son traitement
+            s.cancel(1L, "annulé par l'utilisateur");
+            return !token.isCancelled();
+        }, reasons::add);
+        assertEquals(1, tasks.size());
+        runOne();
+
+        assertTrue(running.get().isCancelled());
+        assertFalse(running.get().isExpired());
+        // la page en cours a gardé son créneau pour la finalisation
+        assertEquals(List.of("annulé par l'utilisateur"), reasons);
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, s.runningSlots());
+        assertNull(s.cancel(1L, "encore"));
+    }
+
+    @Test
+    void unavailableApiRequeuesThePage() {
+        PageScheduler s = scheduler(1, 1, 0);
+        List<Long> seen = new ArrayList<>();
+        s.submit(1L, pages(1, 2), 5, null, (pageId, token) -> {
+            seen.add(pageId);
+            return seen.size() > 1;
+        }, reason -> { });
+        runOne();
+        runOne();
+        runOne();
+        assertEquals(List.of(1L, 1L, 2L), seen);
+    }
+
+    @Test
+    void pageDeadlineExpiresTheToken() {
+        PageScheduler s = scheduler(1, 1, 1);
+        AtomicReference<CancelToken> seen = new AtomicReference<>();
+        s.submit(1L, pages(1, 1), 5, null, (pageId, token) -> {
+            seen.set(token);
+            long until = System.nanoTime() + 10_000_000_000L;
+            while (!token.isCancelled() && System.nanoTime() < until) Thread.onSpinWait();
+            return true;
+        }, reason -> { });
+        runOne();
+
+        assertTrue(seen.get().isExpired());
+        assertTrue(seen.get().reason().startsWith("délai page dépassé"));
+    }
+
+    @Test
+    void openBreakerHoldsPages() {
+        PageScheduler s = scheduler(2, 2, 0);
+        breaker.onFailure("HTTP 503");
+        assertFalse(breaker.isClosed());
+
+        s.submit(1L, pages(1, 3), 5, null, (pageId, token) -> true, reason -> { });
+        assertTrue(tasks.isEmpty());
+        assertEquals(3, s.pendingPages());
+    }
+}
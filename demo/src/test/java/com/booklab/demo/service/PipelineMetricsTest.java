@@ -0,0 +1,52 @@
+package com.booklab.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry);
+
+    @Test
+    void countersAreRegisteredByTheCodeThatIncrementsThem() {
+        assertNull(registry.find("booklab.openai.retries").counter());
+        assertNull(registry.find("booklab.cache.requests").counter());
+
+        metrics.retry("hedge");
+        metrics.cache("blob", true);
+        metrics.cache("blob", false);
+        metrics.cache("blob", false);
+
+        assertEquals(1, registry.get("booklab.openai.retries").tag("reason", "hedge").counter().count());
+        assertEquals(1, registry.get("booklab.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2, registry.get("booklab.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void stageTimerTagsOutcome() throws Exception {
+        metrics.time(PipelineMetrics.JSON_PARSE, () -> "ok");
+        try {
+            metrics.time(PipelineMetrics.JSON_PARSE, () -> {
+                throw new IllegalStateException("boom");
+            });
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(1, registry.get("booklab.stage.duration").tag("stage", "json_parse").tag("outcome", "success").timer().count());
+        assertEquals(1, registry.get("booklab.stage.duration").tag("stage", "json_parse").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    void tokensIgnoreZeroUsage() {
+        metrics.tokens("gpt", 120, 0);
+        metrics.pageProcessed(true, Duration.ofMillis(5));
+        assertEquals(120, registry.get("booklab.openai.tokens").tag("kind", "input").counter().count());
+        assertNull(registry.find("booklab.openai.tokens").tag("kind", "output").counter());
+        assertEquals(1, registry.get("booklab.pages.processed").tag("status", "done").counter().count());
+    }
+}
@@ -0,0 +1,155 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.DocumentStatus;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.PageInputType;
+import com.booklab.demo.domain.PageStatus;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.booklab.demo.service.ModelRouterTest.HE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Issue d'une page selon l'erreur renvoyée par OpenAI (faux service qui échoue à la demande),
+ * et statut du document quand un second traitement est refusé.
+ */
+@SpringBootTest
+class ProcessingServiceTest {
+
+    @Autowired
+    DocumentRepository documentRepo;
+
+    @Autowired
+    PageRepository pageRepo;
+
+    @Autowired
+    StorageService storage;
+
+    @Autowired
+    PdfExportService pdfExport;
+
+    @Autowired
+    BlobStore blobs;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OpenAiCircuitBreaker breaker = new OpenAiCircuitBreaker(5, 60, 60, registry);
+    /** Tâches des workers mises en file, jamais lancées: le document reste en cours. */
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+    /** Faux OpenAI: chaque appel lève l'exception fournie. */
+    private OpenAiResponsesService failing(RuntimeException error) {
+        return new OpenAiResponsesService("http://127.0.0.1:1/v1/responses", "test-key",
+                ModelRouterTest.router("fast-text", "fast-vision"),
+                new HedgingPolicy(false, 0.95, 0, 20, 0), breaker, new PipelineMetrics(registry)) {
+            @Override
+            public ExtractTranslateResult nikudAndTranslateFromText(String hebrewText, CancelToken token) {
+                throw error;
+            }
+        };
+    }
+
+    private ProcessingService service(OpenAiResponsesService openai) {
+        return service(openai, new PageScheduler(tasks::add, breaker, 1, 1, 0, 0, registry));
+    }
+
+    private ProcessingService service(OpenAiResponsesService openai, PageScheduler scheduler) {
+        return new ProcessingService(documentRepo, pageRepo, storage, openai, pdfExport,
+                new PipelineMetrics(registry), scheduler, blobs);
+    }
+
+    private DocumentStatus status(Page page) {
+        return documentRepo.findById(page.getDocument().getId()).orElseThrow().getStatus();
+    }
+
+    private Page textPage() {
+        Document doc = new Document();
+        doc.setTitle("panne");
+        doc.setStatus(DocumentStatus.UPLOADED);
+        doc = documentRepo.save(doc);
+        Page p = new Page();
+        p.setDocument(doc);
+        p.setPageNumber(1);
+        p.setInputType(PageInputType.TEXT);
+        p.setStatus(PageStatus.PENDING);
+        p.setHebrewInputText(HE);
+        return pageRepo.save(p);
+    }
+
+    @Test
+    void outageWhileTheBreakerIsStillClosedRequeuesThePage() {
+        assertTrue(breaker.isClosed());
+        ProcessingService service = service(failing(
+                new OpenAiResponsesService.ApiUnavailableException("OpenAI API error 503", null)));
+        Page page = textPage();
+
+        assertFalse(service.processPage(page.getId(), CancelToken.NONE), "la page repart en file");
+        Page after = pageRepo.findById(page.getId()).orElseThrow();
+        assertEquals(PageStatus.PENDING, after.getStatus());
+        assertNull(after.getError());
+    }
+
+    @Test
+    void openBreakerRequeuesThePage() {
+        ProcessingService service = service(failing(new OpenAiCircuitBreaker.CircuitOpenException("ouvert")));
+        Page page = textPage();
+
+        assertFalse(service.processPage(page.getId(), CancelToken.NONE));
+        assertEquals(PageStatus.PENDING, pageRepo.findById(page.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void otherErrorsFailThePage() {
+        ProcessingService service = service(failing(new IllegalArgumentException("requête refusée")));
+        Page page = textPage();
+
+        assertTrue(service.processPage(page.getId(), CancelToken.NONE));
+        Page after = pageRepo.findById(page.getId()).orElseThrow();
+        assertEquals(PageStatus.FAILED, after.getStatus());
+        assertEquals("requête refusée", after.getError());
+    }
+
+    @Test
+    void secondRunIsRefusedWithoutTouchingTheFirst() {
+        ProcessingService service = service(failing(new IllegalStateException("non appelé")));
+        Page page = textPage();
+        Long docId = page.getDocument().getId();
+
+        assertTrue(service.processDocument(docId));
+        assertEquals(DocumentStatus.PROCESSING, status(page));
+        assertFalse(service.processDocument(docId));
+        assertEquals(DocumentStatus.PROCESSING, status(page));
+        assertFalse(service.completion(docId).isDone(), "le premier traitement garde son suivi");
+    }
+
+    @Test
+    void submissionLostToAConcurrentRunRestoresTheStatus() {
+        // l'ordonnanceur a accepté un autre /process entre la vérification et la soumission
+        PageScheduler taken = new PageScheduler(tasks::add, breaker, 1, 1, 0, 0, registry) {
+            @Override
+            public synchronized boolean submit(Long documentId, List<Long> pageIds, int priority, Integer maxParallel,
+                                               PageTask pageTask, Consumer<String> onComplete) {
+                return false;
+            }
+        };
+        ProcessingService service = service(failing(new IllegalStateException("non appelé")), taken);
+        Page page = textPage();
+
+        assertFalse(service.processDocument(page.getDocument().getId()));
+        assertEquals(DocumentStatus.UPLOADED, status(page));
+        assertTrue(tasks.isEmpty());
+    }
+}
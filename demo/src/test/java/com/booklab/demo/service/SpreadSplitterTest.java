@@ -0,0 +1,214 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.TestImages;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Détection de la reliure sur des scans synthétiques (double page, page seule, reliure peu contrastée,
+ * illustration centrée, orientation EXIF) et format des moitiés produites.
+ */
+@SpringBootTest
+class SpreadSplitterTest {
+
+    private static final AtomicLong seed = new AtomicLong(System.nanoTime());
+
+    @Autowired
+    BlobStore blobs;
+
+    @Autowired
+    PipelineMetrics metrics;
+
+    @TempDir
+    Path dir;
+
+    private SpreadSplitter splitter(boolean lossless) {
+        return new SpreadSplitter(blobs, metrics, true, 1.2, 0.2, 0.15, 0.08, lossless, 0.95f);
+    }
+
+    private static Random rnd() {
+        return new Random(seed.incrementAndGet());
+    }
+
+    private Path file(byte[] bytes, String name) throws IOException {
+        return Files.write(dir.resolve(name), bytes);
+    }
+
+    /** Bande verticale de gris uniforme, centrée sur x. */
+    private static BufferedImage band(BufferedImage img, int x, int width, int gray) {
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int i = x - width / 2; i < x + width / 2; i++) img.setRGB(i, y, (gray << 16) | (gray << 8) | gray);
+        }
+        return img;
+    }
+
+    @Test
+    void spreadIsDetectedAtTheGutter() throws Exception {
+        Path f = file(TestImages.jpeg(TestImages.scan(1600, 1000, true, rnd())), "double.jpg");
+        SpreadSplitter.Detection d = splitter(false).detect(f);
+        assertTrue(d.spread());
+        assertEquals(2, d.pages());
+        assertEquals(1600, d.width());
+        assertEquals(1000, d.height());
+        assertTrue(Math.abs(d.gutterX() - 800) <= 8, "reliure trouvée en x=" + d.gutterX());
+    }
+
+    @Test
+    void gutterOffCentreIsFollowed() throws Exception {
+        BufferedImage img = band(TestImages.scan(1600, 1000, false, rnd()), 900, 16, 0x20);
+        SpreadSplitter.Detection d = splitter(false).detect(file(TestImages.encode(img, "png"), "decale.png"));
+        assertTrue(Math.abs(d.gutterX() - 900) <= 8, "reliure trouvée en x=" + d.gutterX());
+    }
+
+    @Test
+    void singleLandscapePageStaysWhole() throws Exception {
+        Path f = file(TestImages.jpeg(TestImages.scan(1600, 1000, false, rnd())), "paysage.jpg");
+        SpreadSplitter.Detection d = splitter(false).detect(f);
+        assertFalse(d.spread());
+        assertEquals(1, d.pages());
+    }
+
+    @Test
+    void portraitPageIsNotAnalysed() throws Exception {
+        Path f = file(TestImages.jpeg(TestImages.scan(800, 1100, true, rnd())), "portrait.jpg");
+        assertFalse(splitter(false).detect(f).spread());
+    }
+
+    @Test
+    void lowContrastGutterStaysWhole() throws Exception {
+        // fond 200..255 (médiane ~228): une reliure à 190 n'est que 17% plus sombre, sous le seuil de 20%
+        BufferedImage faint = band(TestImages.scan(1600, 1000, false, rnd()), 800, 16, 190);
+        assertFalse(splitter(false).detect(file(TestImages.encode(faint, "png"), "pale.png")).spread());
+
+        BufferedImage visible = band(TestImages.scan(1600, 1000, false, rnd()), 800, 16, 150);
+        assertTrue(splitter(false).detect(file(TestImages.encode(visible, "png"), "visible.png")).spread());
+    }
+
+    @Test
+    void wideCentredIllustrationIsNotAGutter() throws Exception {
+        BufferedImage img = band(TestImages.scan(1600, 1000, false, rnd()), 800, 300, 0x20);
+        assertFalse(splitter(false).detect(file(TestImages.encode(img, "png"), "illustration.png")).spread());
+    }
+
+    @Test
+    void rotatedScanStaysWhole() throws Exception {
+        byte[] jpeg = TestImages.jpeg(TestImages.scan(1600, 1000, true, rnd()));
+        for (int orientation : new int[] {3, 6, 8}) {
+            Path f = file(withOrientation(jpeg, orientation, false), "exif-" + orientation + ".jpg");
+            assertEquals(orientation, SpreadSplitter.exifOrientation(f));
+            assertFalse(splitter(false).detect(f).spread(), "orientation " + orientation);
+        }
+        Path upright = file(withOrientation(jpeg, 1, true), "exif-1.jpg");
+        assertEquals(1, SpreadSplitter.exifOrientation(upright));
+        assertTrue(splitter(false).detect(upright).spread());
+        assertEquals(1, SpreadSplitter.exifOrientation(file(jpeg, "sans-exif.jpg")));
+    }
+
+    @Test
+    void gutterColumnOnProfiles() {
+        SpreadSplitter s = splitter(false);
+        double[] flat = new double[200];
+        Arrays.fill(flat, 220);
+        assertEquals(-1, s.gutterColumn(flat));
+
+        double[] valley = flat.clone();
+        for (int x = 97; x <= 103; x++) valley[x] = 60;
+        assertEquals(100, s.gutterColumn(valley));
+
+        double[] shallow = flat.clone();
+        for (int x = 97; x <= 103; x++) shallow[x] = 190;
+        assertEquals(-1, s.gutterColumn(shallow), "vallée trop peu marquée");
+
+        double[] outside = flat.clone();
+        for (int x = 20; x <= 26; x++) outside[x] = 60;
+        assertEquals(-1, s.gutterColumn(outside), "minimum hors de la bande centrale");
+
+        double[] wide = flat.clone();
+        for (int x = 85; x <= 115; x++) wide[x] = 60;
+        assertEquals(-1, s.gutterColumn(wide), "vallée plus large que 8%");
+
+        assertEquals(-1, s.gutterColumn(new double[10]));
+    }
+
+    @Test
+    void losslessHalvesKeepEveryPixel() throws Exception {
+        BufferedImage source = TestImages.scan(1600, 1000, true, rnd());
+        BlobStore.BlobRef ref = blobs.put(TestImages.jpeg(source), ".jpg");
+        BufferedImage decoded = ImageIO.read(blobs.resolve(ref.hash()).toFile());
+
+        List<BlobStore.BlobRef> halves = splitter(true).split(ref);
+        assertEquals(2, halves.size());
+        BlobStore.BlobRef right = halves.get(0);
+        BlobStore.BlobRef left = halves.get(1);
+        assertTrue(right.path().endsWith(".png"));
+        assertTrue(left.path().endsWith(".png"));
+
+        BufferedImage r = ImageIO.read(blobs.resolve(right.hash()).toFile());
+        BufferedImage l = ImageIO.read(blobs.resolve(left.hash()).toFile());
+        assertEquals(1600, r.getWidth() + l.getWidth());
+        assertArrayEquals(pixels(decoded, 0, l.getWidth()), pixels(l, 0, l.getWidth()));
+        assertArrayEquals(pixels(decoded, l.getWidth(), r.getWidth()), pixels(r, 0, r.getWidth()));
+    }
+
+    @Test
+    void lossyHalvesKeepTheSourceFormat() throws Exception {
+        BlobStore.BlobRef jpg = blobs.put(TestImages.jpeg(TestImages.scan(1600, 1000, true, rnd())), ".jpg");
+        List<BlobStore.BlobRef> halves = splitter(false).split(jpg);
+        assertEquals(2, halves.size());
+        assertTrue(halves.get(0).path().endsWith(".jpg"));
+        assertEquals(800, ImageIO.read(blobs.resolve(halves.get(1).hash()).toFile()).getWidth(), 8);
+
+        // un PNG reste un PNG: pas de perte même sans app.spread.lossless
+        BufferedImage source = TestImages.scan(1600, 1000, true, rnd());
+        BlobStore.BlobRef png = blobs.put(TestImages.encode(source, "png"), ".png");
+        halves = splitter(false).split(png);
+        BufferedImage l = ImageIO.read(blobs.resolve(halves.get(1).hash()).toFile());
+        assertTrue(halves.get(1).path().endsWith(".png"));
+        assertArrayEquals(pixels(source, 0, l.getWidth()), pixels(l, 0, l.getWidth()));
+    }
+
+    private static int[] pixels(BufferedImage img, int x, int width) {
+        return img.getRGB(x, 0, width, img.getHeight(), null, 0, width);
+    }
+
+    /** JPEG avec un segment APP1 EXIF minimal (IFD0 = orientation seule) inséré après SOI. */
+    private static byte[] withOrientation(byte[] jpeg, int orientation, boolean littleEndian) throws IOException {
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        if (littleEndian) {
+            tiff.write(new byte[] {'I', 'I', 42, 0, 8, 0, 0, 0, 1, 0, 0x12, 0x01, 3, 0, 1, 0, 0, 0,
+                    (byte) orientation, 0, 0, 0, 0, 0, 0, 0});
+        } else {
+            tiff.write(new byte[] {'M', 'M', 0, 42, 0, 0, 0, 8, 0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1,
+                    0, (byte) orientation, 0, 0, 0, 0, 0, 0});
+        }
+        byte[] payload = tiff.toByteArray();
+        int length = 2 + 6 + payload.length;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(new byte[] {(byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length, 'E', 'x', 'i', 'f', 0, 0});
+        out.write(payload);
+        out.write(jpeg, 2, jpeg.length - 2);
+        assertTrue(ImageIO.read(new ByteArrayInputStream(out.toByteArray())) != null);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,237 @@
+package com.booklab.demo.service;
+
+import com.booklab.demo.domain.Document;
+import com.booklab.demo.domain.DocumentStatus;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.PageInputType;
+import com.booklab.demo.domain.PageStatus;
+import com.booklab.demo.repo.DocumentRepository;
+import com.booklab.demo.repo.PageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static com.booklab.demo.service.ModelRouterTest.FR;
+import static com.booklab.demo.service.ModelRouterTest.HE;
+import static com.booklab.demo.service.ModelRouterTest.NIKUD;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Archive relue avec ZipInputStream: entrées STORED (méthode, taille, CRC), noms et textes UTF-8,
+ * images d'origine en option (double page coupée exportée entière, une fois), PDF et images lus depuis
+ * l'archive du document une fois empaqueté.
+ */
+@SpringBootTest
+class ZipExportServiceTest {
+
+    private static final String TITLE = "ספר בראשית";
+
+    @Autowired
+    ZipExportService zipExport;
+
+    @Autowired
+    StorageService storage;
+
+    @Autowired
+    BlobStore blobs;
+
+    @Autowired
+    PackStore packs;
+
+    @Autowired
+    DocumentRepository documentRepo;
+
+    @Autowired
+    PageRepository pageRepo;
+
+    /** Entrée relue: méthode et CRC de l'en-tête, contenu décompressé (CRC vérifié par ZipInputStream). */
+    private record Entry(int method, long size, long crc, byte[] content) {
+        String text() {
+            return new String(content, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] unique(Random rnd, int size) {
+        byte[] b = new byte[size];
+        rnd.nextBytes(b);
+        return b;
+    }
+
+    private Document document(byte[] pdf, byte[] image) throws IOException {
+        Document doc = new Document();
+        doc.setTitle(TITLE);
+        doc.setStatus(DocumentStatus.DONE);
+        doc = documentRepo.save(doc);
+        doc.setPdfPath(storage.saveDocumentPdf(doc.getId(), pdf));
+        doc = documentRepo.save(doc);
+
+        BlobStore.BlobRef img = blobs.put(image, ".jpg");
+        Page scanned = new Page();
+        scanned.setDocument(doc);
+        scanned.setPageNumber(1);
+        scanned.setInputType(PageInputType.IMAGE);
+        scanned.setStatus(PageStatus.DONE);
+        scanned.setImagePath(img.path());
+        scanned.setImageHash(img.hash());
+        scanned.setHebrewPlain(HE);
+        scanned.setHebrewNikud(NIKUD);
+        scanned.setFrText(FR);
+        pageRepo.save(scanned);
+
+        Page typed = new Page();
+        typed.setDocument(doc);
+        typed.setPageNumber(2);
+        typed.setInputType(PageInputType.TEXT);
+        typed.setStatus(PageStatus.PENDING);
+        typed.setHebrewInputText(HE);
+        pageRepo.save(typed);
+        return doc;
+    }
+
+    private byte[] export(List<Long> ids, boolean images) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        zipExport.export(ids, images, out);
+        return out.toByteArray();
+    }
+
+    private static Map<String, Entry> read(byte[] zip) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip), StandardCharsets.UTF_8)) {
+            ZipEntry e;
+            while ((e = in.getNextEntry()) != null) {
+                int method = e.getMethod();
+                byte[] content = in.readAllBytes();
+                entries.put(e.getName(), new Entry(method, e.getSize(), e.getCrc(), content));
+            }
+        }
+        return entries;
+    }
+
+    private static long crc(byte[] b) {
+        CRC32 crc = new CRC32();
+        crc.update(b);
+        return crc.getValue();
+    }
+
+    private static void assertStored(byte[] expected, Entry e) {
+        assertEquals(ZipEntry.STORED, e.method());
+        assertEquals(expected.length, e.size());
+        assertEquals(crc(expected), e.crc());
+        assertArrayEquals(expected, e.content());
+    }
+
+    @Test
+    void archiveReadsBackWithStoredBinariesAndUtf8Texts() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        byte[] pdf = unique(rnd, 150_000);
+        byte[] image = unique(rnd, 70_000);
+        Document doc = document(pdf, image);
+        String dir = "doc-" + doc.getId() + "-ספר-בראשית/";
+        assertEquals(dir, ZipExportService.folder(doc));
+
+        byte[] zip = export(List.of(doc.getId()), false);
+        // nom d'entrée hébreu: drapeau UTF-8 (bit 11) posé dans l'en-tête local
+        assertNotEquals(0, ((zip[6] & 0xFF) | (zip[7] & 0xFF) << 8) & 0x800);
+
+        Map<String, Entry> entries = read(zip);
+        assertEquals(List.of(dir + "document.pdf", dir + "textes/page-001.txt", dir + "textes/page-002.txt"),
+                List.copyOf(entries.keySet()));
+        assertStored(pdf, entries.get(dir + "document.pdf"));
+
+        Entry first = entries.get(dir + "textes/page-001.txt");
+        assertEquals(ZipEntry.DEFLATED, first.method());
+        assertEquals("== Hébreu ==\n" + HE + "\n\n== Hébreu (niqqud) ==\n" + NIKUD + "\n\n== Français ==\n" + FR + "\n",
+                first.text());
+        assertEquals("== Hébreu ==\n" + HE + "\n", entries.get(dir + "textes/page-002.txt").text());
+    }
+
+    @Test
+    void originalImagesAreExportedOnRequestAndReadFromThePack() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        byte[] pdf = unique(rnd, 20_000);
+        byte[] image = unique(rnd, 90_000);
+        Document doc = document(pdf, image);
+        String dir = ZipExportService.folder(doc);
+
+        Map<String, Entry> loose = read(export(List.of(doc.getId()), true));
+        assertStored(image, loose.get(dir + "originals/page-001.jpg"));
+        assertFalse(loose.containsKey(dir + "originals/page-002.jpg"), "page texte: pas d'image");
+
+        // document empaqueté: PDF et image relus dans pages.pack (readFile / readPageImage)
+        packs.packDocument(doc.getId());
+        assertFalse(packs.needsPacking(doc.getId()));
+        Map<String, Entry> packed = read(export(List.of(doc.getId()), true));
+        assertEquals(loose.keySet(), packed.keySet());
+        assertStored(pdf, packed.get(dir + "document.pdf"));
+        assertStored(image, packed.get(dir + "originals/page-001.jpg"));
+    }
+
+    @Test
+    void splitSpreadIsExportedOnceAsTheOriginalImage() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        byte[] spread = unique(rnd, 60_000);
+        byte[] single = unique(rnd, 30_000);
+        Document doc = document(unique(rnd, 5_000), single);
+        String dir = ZipExportService.folder(doc);
+
+        // pages 3 et 4: moitiés (JPEG) d'une double page déposée en PNG, gardée par sourceHash
+        BlobStore.BlobRef original = blobs.put(spread, ".png");
+        for (int n = 3; n <= 4; n++) {
+            BlobStore.BlobRef half = blobs.put(unique(rnd, 20_000), ".jpg");
+            Page p = new Page();
+            p.setDocument(doc);
+            p.setPageNumber(n);
+            p.setInputType(PageInputType.IMAGE);
+            p.setStatus(PageStatus.PENDING);
+            p.setImagePath(half.path());
+            p.setImageHash(half.hash());
+            p.setSourceHash(original.hash());
+            pageRepo.save(p);
+        }
+        blobs.retain(original.hash());
+
+        Map<String, Entry> entries = read(export(List.of(doc.getId()), true));
+        List<String> originals = entries.keySet().stream().filter(n -> n.contains("/originals/")).toList();
+        assertEquals(List.of(dir + "originals/page-001.jpg", dir + "originals/page-003-004.png"), originals);
+        assertStored(single, entries.get(dir + "originals/page-001.jpg"));
+        assertStored(spread, entries.get(dir + "originals/page-003-004.png"));
+
+        // l'original n'est pas empaqueté avec les moitiés: il reste lu dans le BlobStore
+        packs.packDocument(doc.getId());
+        assertStored(spread, read(export(List.of(doc.getId()), true)).get(dir + "originals/page-003-004.png"));
+    }
+
+    @Test
+    void missingFilesAreSkippedAndOtherDocumentsStillExported() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        Document broken = new Document();
+        broken.setTitle("sans fichier");
+        broken.setStatus(DocumentStatus.DONE);
+        broken = documentRepo.save(broken);
+        broken.setPdfPath("doc-" + broken.getId() + "/absent.pdf");
+        broken = documentRepo.save(broken);
+        Document doc = document(unique(rnd, 1000), unique(rnd, 1000));
+
+        String brokenDir = ZipExportService.folder(broken);
+        Map<String, Entry> entries = read(export(zipExport.existing(List.of(broken.getId(), doc.getId(), -1L)), true));
+        assertTrue(entries.keySet().stream().noneMatch(n -> n.startsWith(brokenDir)));
+        assertTrue(entries.containsKey(ZipExportService.folder(doc) + "document.pdf"));
+        assertTrue(entries.containsKey(ZipExportService.folder(doc) + "originals/page-001.jpg"));
+    }
+}
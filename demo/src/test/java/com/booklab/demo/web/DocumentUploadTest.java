@@ -0,0 +1,130 @@
+package com.booklab.demo.web;
+
+import com.booklab.demo.TestImages;
+import com.booklab.demo.domain.Page;
+import com.booklab.demo.domain.StoredBlob;
+import com.booklab.demo.repo.BlobRepository;
+import com.booklab.demo.repo.PageRepository;
+import com.booklab.demo.service.ProcessingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Upload multipart à travers le vrai Tomcat (limites de parts, redirection vers le document). */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DocumentUploadTest {
+
+    @Value("${local.server.port}")
+    int port;
+
+    @Autowired
+    PageRepository pageRepo;
+
+    @Autowired
+    BlobRepository blobRepo;
+
+    @Autowired
+    ProcessingService processing;
+
+    /** Plus de 10 parts: le défaut de Tomcat (max-part-count=10) refusait ces uploads. */
+    @Test
+    void uploadOfManyPagesIsAccepted() {
+        int pages = 25;
+        long docId = upload("gros livre", pages, new Random(3));
+        assertEquals(pages, pageRepo.findByDocumentIdOrderByPageNumberAsc(docId).size());
+    }
+
+    /** Chaque page détient exactement une référence; la double page d'origine, coupée, une par moitié. */
+    @Test
+    void uploadAndSpreadSplitLeaveOneReferencePerPage() throws Exception {
+        Random rnd = new Random(System.nanoTime());
+        byte[] spread = TestImages.jpeg(TestImages.scan(1600, 1000, true, rnd));
+        byte[] single = TestImages.jpeg(TestImages.scan(800, 1100, false, rnd));
+
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("title", "double page");
+        form.add("files", named(spread, "a-double.jpg"));
+        form.add("files", named(single, "b-simple.jpg"));
+        long docId = postForm(form);
+
+        List<Page> pages = pageRepo.findByDocumentIdOrderByPageNumberAsc(docId);
+        assertEquals(3, pages.size(), "double page coupée en deux + page simple");
+        assertEquals(sha256(single), pages.get(2).getImageHash());
+        for (Page p : pages) {
+            assertEquals(1, refs(p.getImageHash()), "page " + p.getPageNumber());
+        }
+        assertEquals(2, refs(sha256(spread)), "l'original de la double page reste au BlobStore");
+        assertEquals(sha256(spread), pages.get(0).getSourceHash());
+        assertEquals(sha256(spread), pages.get(1).getSourceHash());
+        assertNull(pages.get(2).getSourceHash(), "page simple: son image est l'original");
+
+        // suppression: les deux moitiés rendent leur référence, l'original part au GC
+        assertTrue(processing.deleteDocument(docId));
+        assertEquals(-1, refs(sha256(spread)));
+    }
+
+    private int refs(String hash) {
+        return blobRepo.findById(hash).map(StoredBlob::getRefCount).orElse(-1);
+    }
+
+    static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    long upload(String title, int pages, Random rnd) {
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("title", title);
+        for (int i = 1; i <= pages; i++) {
+            byte[] scan = new byte[2_000];
+            rnd.nextBytes(scan);
+            form.add("files", named(scan, "page-%03d.jpg".formatted(i)));
+        }
+        return postForm(form);
+    }
+
+    long postForm(MultiValueMap<String, Object> form) {
+        // pas de suivi des redirections: l'id du document est lu dans Location
+        RestClient client = RestClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .requestFactory(new JdkClientHttpRequestFactory(
+                        HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build()))
+                .build();
+        ResponseEntity<Void> resp = client.post().uri("/documents")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(form)
+                .retrieve()
+                .toBodilessEntity();
+
+        String location = String.valueOf(resp.getHeaders().getLocation());
+        int idx = location.lastIndexOf("/documents/");
+        assertTrue(idx >= 0, "Upload refusé: redirection vers " + location);
+        return Long.parseLong(location.substring(idx + "/documents/".length()).replaceAll("\\D.*$", ""));
+    }
+
+    static ByteArrayResource named(byte[] content, String name) {
+        return new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return name;
+            }
+        };
+    }
+}